@@ -0,0 +1,68 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@code AnagramIndex.wordsFrom} with {@code AnagramIndex.wordsFromByScan}, the brute
+ * force scan over the alphabetized dictionary, on seven-letter racks.
+ *
+ * @author Spyros Dellas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnagramIndexBenchmark {
+
+    // Vowels are weighted so that words share letters as in real dictionaries
+    private static final String LETTERS = "aaaaaeeeeeeiiiiooooouuubccddfgghhklllmmnnnpprrrrsssstttttvwy";
+    private static final int RACKS = 1024;
+
+    @Param({"10000", "200000"})
+    private int words;
+
+    private Set<String> dictionary;
+    private Object index;
+    private final String[] racks = new String[RACKS];
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        SplittableRandom random = new SplittableRandom(5);
+        dictionary = new LinkedHashSet<>();
+        while (dictionary.size() < words)
+            dictionary.add(randomWord(random, 2 + random.nextInt(7)));
+        index = Targets.ANAGRAM_INDEX_OF.invokeExact((java.util.Collection<?>) dictionary);
+        for (int i = 0; i < RACKS; i++)
+            racks[i] = randomWord(random, 7);
+    }
+
+    private static String randomWord(SplittableRandom random, int length) {
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++)
+            word[i] = LETTERS.charAt(random.nextInt(LETTERS.length()));
+        return new String(word);
+    }
+
+    private String nextRack() {
+        return racks[next++ & (RACKS - 1)];
+    }
+
+    @Benchmark
+    public List<?> index() throws Throwable {
+        return (List<?>) Targets.WORDS_FROM.invokeExact(index, nextRack());
+    }
+
+    @Benchmark
+    public List<?> scan() throws Throwable {
+        return (List<?>) Targets.WORDS_FROM_BY_SCAN.invokeExact((java.util.Collection<?>) dictionary, nextRack());
+    }
+}
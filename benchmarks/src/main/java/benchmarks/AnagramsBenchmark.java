@@ -0,0 +1,87 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@code Anagrams.anagramsIterative}, {@code anagramsStream} and
+ * {@code anagramsStreamOveruse} on generated dictionaries of increasing size.
+ * <p>
+ * The dictionaries are built from random base words and some of their permutations, so that
+ * they contain anagram groups of various sizes. Standard output is discarded while the
+ * benchmarks run, because the methods print the groups they find.
+ *
+ * @author Spyros Dellas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnagramsBenchmark {
+
+    @Param({"1000", "100000"})
+    private int words;
+
+    @Param({"4"})
+    private int minGroupSize;
+
+    private Path dictionary;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        List<String> lines = new ArrayList<>(words);
+        while (lines.size() < words) {
+            char[] word = new char[4 + random.nextInt(6)];
+            for (int i = 0; i < word.length; i++)
+                word[i] = (char) ('a' + random.nextInt(26));
+            for (int permutations = 1 + random.nextInt(6); permutations > 0 && lines.size() < words; permutations--) {
+                for (int i = word.length - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    char tmp = word[i];
+                    word[i] = word[j];
+                    word[j] = tmp;
+                }
+                lines.add(new String(word));
+            }
+        }
+        dictionary = Files.createTempFile("dictionary", ".txt");
+        Files.write(dictionary, lines);
+
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        Files.deleteIfExists(dictionary);
+    }
+
+    @Benchmark
+    public void iterative() throws Throwable {
+        Targets.ANAGRAMS_ITERATIVE.invokeExact(dictionary.toString(), minGroupSize);
+    }
+
+    @Benchmark
+    public void stream() throws Throwable {
+        Targets.ANAGRAMS_STREAM.invokeExact(dictionary.toString(), minGroupSize);
+    }
+
+    @Benchmark
+    public void streamOveruse() throws Throwable {
+        Targets.ANAGRAMS_STREAM_OVERUSE.invokeExact(dictionary.toString(), minGroupSize);
+    }
+}
@@ -0,0 +1,38 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@code Card.newDeckIterative} with {@code Card.newDeckStreamBased}.
+ * <p>
+ * A deck always has 52 cards, so the input size is the number of decks built per operation.
+ *
+ * @author Spyros Dellas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int decks;
+
+    @Benchmark
+    public void iterative(Blackhole bh) throws Throwable {
+        for (int i = 0; i < decks; i++)
+            bh.consume((List<?>) Targets.NEW_DECK_ITERATIVE.invokeExact());
+    }
+
+    @Benchmark
+    public void streamBased(Blackhole bh) throws Throwable {
+        for (int i = 0; i < decks; i++)
+            bh.consume((List<?>) Targets.NEW_DECK_STREAM_BASED.invokeExact());
+    }
+}
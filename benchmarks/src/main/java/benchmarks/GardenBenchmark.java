@@ -0,0 +1,56 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@code Garden.listByLifeCycle} with {@code Garden.listByLifeCycleStreamCollector} on
+ * gardens of increasing size.
+ *
+ * @author Spyros Dellas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GardenBenchmark {
+
+    @Param({"5", "1000", "100000"})
+    private int plants;
+
+    private Object garden;
+
+    /*
+     * Grows the default garden of 5 plants to the requested size; not part of the measurement.
+     * Garden.addPlant updates its life-cycle index in O(1), so even the largest garden is built
+     * in well under a second.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        Class<?> gardenType = Targets.type("Garden");
+        Class<?> plantType = Targets.type("Plant");
+        Class<?> lifeCycleType = Targets.type("Plant$LifeCycle");
+        Object[] lifeCycles = lifeCycleType.getEnumConstants();
+
+        garden = gardenType.getConstructor().newInstance();
+        Method addPlant = gardenType.getMethod("addPlant", plantType);
+        var newPlant = plantType.getConstructor(String.class, lifeCycleType);
+        for (int i = 5; i < plants; i++)
+            addPlant.invoke(garden, newPlant.newInstance("Plant " + i, lifeCycles[i % lifeCycles.length]));
+    }
+
+    @Benchmark
+    public Map<?, ?> forLoops() throws Throwable {
+        return (Map<?, ?>) Targets.LIST_BY_LIFE_CYCLE.invokeExact(garden);
+    }
+
+    @Benchmark
+    public Map<?, ?> streamCollector() throws Throwable {
+        return (Map<?, ?>) Targets.LIST_BY_LIFE_CYCLE_STREAM_COLLECTOR.invokeExact(garden);
+    }
+}
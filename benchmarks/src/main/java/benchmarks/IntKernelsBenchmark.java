@@ -0,0 +1,122 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the {@code IntKernels} with the equivalent loops over a {@code List<Integer>}.
+ * <p>
+ * The elements are random in [0, 1000), so {@code indexOf} searches for a value that is absent
+ * and scans the whole array, and half of the elements are even. Before the trial, {@code filter}
+ * is called with several predicates, as it is in a program with more than one caller, so that
+ * its call to {@code predicate.test} is megamorphic; {@code filter} is measured against both the
+ * boxed loop and the {@code IntStream} that {@code IntList.filterInts} uses by default.
+ *
+ * @author Spyros Dellas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntKernelsBenchmark {
+
+    private static final int ABSENT = 1000;
+    private static final IntPredicate EVEN = x -> (x & 1) == 0;
+
+    @Param({"1000", "1000000"})
+    private int size;
+
+    private int[] a;
+    private List<Integer> boxed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        a = new SplittableRandom(42).ints(size, 0, 1000).toArray();
+        boxed = new ArrayList<>(size);
+        for (int value : a)
+            boxed.add(value);
+
+        IntPredicate[] predicates = {EVEN, x -> x < 500, x -> x % 3 == 0};
+        for (int i = 0; i < 10_000; i++) {
+            int[] unused = (int[]) Targets.INT_KERNELS_FILTER.invokeExact(a, 0, Math.min(size, 100),
+                    predicates[i % predicates.length]);
+        }
+    }
+
+    @Benchmark
+    public int kernelIndexOf() throws Throwable {
+        return (int) Targets.INT_KERNELS_INDEX_OF.invokeExact(a, 0, a.length, ABSENT);
+    }
+
+    @Benchmark
+    public int boxedIndexOf() {
+        return boxed.indexOf(ABSENT);
+    }
+
+    @Benchmark
+    public int kernelCount() throws Throwable {
+        return (int) Targets.INT_KERNELS_COUNT.invokeExact(a, 0, a.length, 7);
+    }
+
+    @Benchmark
+    public int boxedCount() {
+        int count = 0;
+        for (Integer element : boxed)
+            if (element == 7)
+                count++;
+        return count;
+    }
+
+    @Benchmark
+    public long kernelSum() throws Throwable {
+        return (long) Targets.INT_KERNELS_SUM.invokeExact(a, 0, a.length);
+    }
+
+    @Benchmark
+    public long boxedSum() {
+        long sum = 0;
+        for (Integer element : boxed)
+            sum += element;
+        return sum;
+    }
+
+    @Benchmark
+    public int kernelMax() throws Throwable {
+        return (int) Targets.INT_KERNELS_MAX.invokeExact(a, 0, a.length);
+    }
+
+    @Benchmark
+    public int boxedMax() {
+        int max = Integer.MIN_VALUE;
+        for (Integer element : boxed)
+            max = Math.max(max, element);
+        return max;
+    }
+
+    @Benchmark
+    public int[] kernelFilter() throws Throwable {
+        return (int[]) Targets.INT_KERNELS_FILTER.invokeExact(a, 0, a.length, EVEN);
+    }
+
+    @Benchmark
+    public List<Integer> boxedFilter() {
+        List<Integer> result = new ArrayList<>();
+        for (Integer element : boxed)
+            if (EVEN.test(element))
+                result.add(element);
+        return result;
+    }
+
+    @Benchmark
+    public int[] intStreamFilter() {
+        return IntStream.of(a).filter(EVEN).toArray();
+    }
+}
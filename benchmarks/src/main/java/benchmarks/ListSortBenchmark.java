@@ -0,0 +1,66 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the four {@code ListSort} methods on lists of random strings of increasing size.
+ * <p>
+ * Every operation sorts a fresh copy of the same unsorted list. The copy is part of the
+ * measurement, but it costs the same for all four methods.
+ *
+ * @author Spyros Dellas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListSortBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    private int size;
+
+    private List<String> strings;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            strings.add("x".repeat(1 + random.nextInt(32)));
+    }
+
+    @Benchmark
+    public List<String> obsoleteSort() throws Throwable {
+        List<String> copy = new ArrayList<>(strings);
+        Targets.OBSOLETE_SORT.invokeExact(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public List<String> sortMethodA() throws Throwable {
+        List<String> copy = new ArrayList<>(strings);
+        Targets.SORT_METHOD_A.invokeExact(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public List<String> sortMethodB() throws Throwable {
+        List<String> copy = new ArrayList<>(strings);
+        Targets.SORT_METHOD_B.invokeExact(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public List<String> sortMethodC() throws Throwable {
+        List<String> copy = new ArrayList<>(strings);
+        Targets.SORT_METHOD_C.invokeExact(copy);
+        return copy;
+    }
+}
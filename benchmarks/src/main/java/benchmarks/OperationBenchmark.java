@@ -0,0 +1,72 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@code Operation} with {@code OperationImproved}, both one pair at a time and in bulk.
+ * <p>
+ * The per-pair benchmarks cycle through all four constants, so that the call to {@code apply}
+ * is megamorphic, as it is at a call site that evaluates arbitrary operations. The bulk
+ * benchmarks apply each constant to the whole arrays once.
+ *
+ * @author Spyros Dellas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    private int size;
+
+    private final Object[] operations = Targets.type("Operation").getEnumConstants();
+    private final Object[] improvedOperations = Targets.type("OperationImproved").getEnumConstants();
+
+    private double[] xs;
+    private double[] ys;
+    private double[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        xs = random.doubles(size, 1, 100).toArray();
+        ys = random.doubles(size, 1, 100).toArray();
+        out = new double[size];
+    }
+
+    @Benchmark
+    public double[] operationApply() throws Throwable {
+        for (Object op : operations)
+            for (int i = 0; i < size; i++)
+                out[i] = (double) Targets.OPERATION_APPLY.invokeExact(op, xs[i], ys[i]);
+        return out;
+    }
+
+    @Benchmark
+    public double[] operationImprovedApply() throws Throwable {
+        for (Object op : improvedOperations)
+            for (int i = 0; i < size; i++)
+                out[i] = (double) Targets.OPERATION_IMPROVED_APPLY.invokeExact(op, xs[i], ys[i]);
+        return out;
+    }
+
+    @Benchmark
+    public double[] operationApplyAll() throws Throwable {
+        for (Object op : operations)
+            Targets.OPERATION_APPLY_ALL.invokeExact(op, xs, ys, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] operationImprovedApplyAll() throws Throwable {
+        for (Object op : improvedOperations)
+            Targets.OPERATION_IMPROVED_APPLY_ALL.invokeExact(op, xs, ys, out);
+        return out;
+    }
+}
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Method handles for the methods under benchmark.
+ * <p>
+ * The snippets live in the default package, which code in a named package can't import, and JMH
+ * refuses to generate benchmarks in the default package. We therefore bind to the snippets
+ * reflectively, once, and call them through {@code static final} method handles, which the JIT
+ * treats as constants and inlines through just like a direct call.
+ *
+ * @author Spyros Dellas
+ */
+final class Targets {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // Anagrams
+    static final MethodHandle ANAGRAMS_ITERATIVE = findStatic("Anagrams", "anagramsIterative", methodType(void.class, String.class, int.class));
+    static final MethodHandle ANAGRAMS_STREAM = findStatic("Anagrams", "anagramsStream", methodType(void.class, String.class, int.class));
+    static final MethodHandle ANAGRAMS_STREAM_OVERUSE = findStatic("Anagrams", "anagramsStreamOveruse", methodType(void.class, String.class, int.class));
+
+    // AnagramIndex
+    static final MethodHandle ANAGRAM_INDEX_OF = findStatic("AnagramIndex", "of", methodType(type("AnagramIndex"), Collection.class))
+            .asType(methodType(Object.class, Collection.class));
+    static final MethodHandle WORDS_FROM = findVirtual("AnagramIndex", "wordsFrom", methodType(List.class, String.class));
+    static final MethodHandle WORDS_FROM_BY_SCAN = findStatic("AnagramIndex", "wordsFromByScan", methodType(List.class, Collection.class, String.class));
+
+    // Card
+    static final MethodHandle NEW_DECK_ITERATIVE = findStatic("Card", "newDeckIterative", methodType(List.class));
+    static final MethodHandle NEW_DECK_STREAM_BASED = findStatic("Card", "newDeckStreamBased", methodType(List.class));
+
+    // Garden; the receiver is erased to Object
+    static final MethodHandle LIST_BY_LIFE_CYCLE = findVirtual("Garden", "listByLifeCycle", methodType(Map.class));
+    static final MethodHandle LIST_BY_LIFE_CYCLE_STREAM_COLLECTOR = findVirtual("Garden", "listByLifeCycleStreamCollector", methodType(Map.class));
+
+    // IntKernels
+    static final MethodHandle INT_KERNELS_INDEX_OF = findStatic("IntKernels", "indexOf", methodType(int.class, int[].class, int.class, int.class, int.class));
+    static final MethodHandle INT_KERNELS_COUNT = findStatic("IntKernels", "count", methodType(int.class, int[].class, int.class, int.class, int.class));
+    static final MethodHandle INT_KERNELS_SUM = findStatic("IntKernels", "sum", methodType(long.class, int[].class, int.class, int.class));
+    static final MethodHandle INT_KERNELS_MAX = findStatic("IntKernels", "max", methodType(int.class, int[].class, int.class, int.class));
+    static final MethodHandle INT_KERNELS_FILTER = findStatic("IntKernels", "filter", methodType(int[].class, int[].class, int.class, int.class, IntPredicate.class));
+
+    // ListSort
+    static final MethodHandle OBSOLETE_SORT = findStatic("ListSort", "obsoleteSort", methodType(void.class, List.class));
+    static final MethodHandle SORT_METHOD_A = findStatic("ListSort", "sortMethodA", methodType(void.class, List.class));
+    static final MethodHandle SORT_METHOD_B = findStatic("ListSort", "sortMethodB", methodType(void.class, List.class));
+    static final MethodHandle SORT_METHOD_C = findStatic("ListSort", "sortMethodC", methodType(void.class, List.class));
+
+    // Operation and OperationImproved; the receiver is erased to Object
+    static final MethodHandle OPERATION_APPLY = findVirtual("Operation", "apply", methodType(double.class, double.class, double.class));
+    static final MethodHandle OPERATION_APPLY_ALL = findVirtual("Operation", "applyAll", methodType(void.class, double[].class, double[].class, double[].class));
+    static final MethodHandle OPERATION_IMPROVED_APPLY = findVirtual("OperationImproved", "apply", methodType(double.class, double.class, double.class));
+    static final MethodHandle OPERATION_IMPROVED_APPLY_ALL = findVirtual("OperationImproved", "applyAll", methodType(void.class, double[].class, double[].class, double[].class));
+
+    private Targets() {
+    }
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle findStatic(String type, String name, MethodType methodType) {
+        try {
+            return LOOKUP.findStatic(type(type), name, methodType);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle findVirtual(String type, String name, MethodType methodType) {
+        try {
+            MethodHandle handle = LOOKUP.findVirtual(type(type), name, methodType);
+            return handle.asType(handle.type().changeParameterType(0, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
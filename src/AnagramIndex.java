@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * An index of the words of a dictionary, which answers "which words can be spelled from these
+ * letters" without scanning the dictionary.
+ * <p>
+ * The index is a trie keyed on the alphabetized form of each word, the same key that
+ * {@link Anagrams} groups by, so each node holds a whole anagram group. Because every key is
+ * sorted, the letters along any path are in ascending order, and spelling a word from a set of
+ * letters means walking a path whose letters can all be taken from the set. A query turns its
+ * letters into a vector of counts, and walks the trie depth first, following an edge only while
+ * the count of its letter is positive; every subtree that needs a letter the query has run out
+ * of is pruned at its root, so a query only visits the nodes whose keys it can spell.
+ * <p>
+ * Once built, the trie is flattened into arrays, with the edges of each node sorted by letter,
+ * and the letters of the dictionary mapped to dense indices, so that the count vector of a query
+ * is only as long as the alphabet of the dictionary. An index is immutable and thread-safe.
+ *
+ * @author Spyros Dellas
+ */
+public final class AnagramIndex {
+
+    private final char[] alphabet;      // the distinct letters of the dictionary, in ascending order
+
+    // node n has edges childStart[n] to childStart[n + 1] - 1, sorted by letter
+    private final int[] childStart;
+    private final int[] childLetter;    // the index in the alphabet of the letter of each edge
+    private final int[] childNode;
+
+    // node n holds the anagram group words[wordStart[n]] to words[wordStart[n + 1] - 1]
+    private final int[] wordStart;
+    private final String[] words;
+
+    private AnagramIndex(Collection<String> dictionary) {
+        // Build a pointer-based trie first; it is flattened below
+        Node root = new Node();
+        SortedSet<Character> letters = new TreeSet<>();
+        int wordCount = 0;
+        for (String word : dictionary) {
+            Node node = root;
+            for (char c : Anagrams.alphabetize(word).toCharArray()) {
+                letters.add(c);
+                node = node.children.computeIfAbsent(c, unused -> new Node());
+            }
+            if (node.words.add(word))
+                wordCount++;
+        }
+
+        alphabet = new char[letters.size()];
+        int i = 0;
+        for (char c : letters)
+            alphabet[i++] = c;
+
+        int nodeCount = root.count();
+        childStart = new int[nodeCount + 1];
+        childLetter = new int[nodeCount - 1];
+        childNode = new int[nodeCount - 1];
+        wordStart = new int[nodeCount + 1];
+        words = new String[wordCount];
+        flatten(root);
+    }
+
+    private static final class Node {
+        final SortedMap<Character, Node> children = new TreeMap<>();
+        final SortedSet<String> words = new TreeSet<>();
+
+        int count() {
+            int count = 1;
+            for (Node child : children.values())
+                count += child.count();
+            return count;
+        }
+    }
+
+    // Numbers the nodes breadth first, so that the children of each node get consecutive numbers
+    private void flatten(Node root) {
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        int node = 0;
+        int edge = 0;
+        int word = 0;
+        while (!queue.isEmpty()) {
+            Node n = queue.remove();
+            childStart[node] = edge;
+            wordStart[node] = word;
+            for (String w : n.words)
+                words[word++] = w;
+            for (Map.Entry<Character, Node> child : n.children.entrySet()) {
+                childLetter[edge] = Arrays.binarySearch(alphabet, child.getKey());
+                childNode[edge] = node + queue.size() + 1;
+                edge++;
+                queue.add(child.getValue());
+            }
+            node++;
+        }
+        childStart[node] = edge;
+        wordStart[node] = word;
+    }
+
+    /**
+     * Builds an index of the given words.
+     *
+     * @param dictionary the words
+     * @return a new index
+     */
+    public static AnagramIndex of(Collection<String> dictionary) {
+        return new AnagramIndex(dictionary);
+    }
+
+    /**
+     * Builds an index of the words in a dictionary file, one word per line.
+     *
+     * @param path the file containing the dictionary
+     * @return a new index
+     * @throws IOException if an IO error occurs
+     */
+    public static AnagramIndex of(Path path) throws IOException {
+        List<String> dictionary = new ArrayList<>();
+        try (Stream<String> lines = Files.lines(path)) {
+            lines.map(String::trim).filter(line -> !line.isEmpty()).forEach(dictionary::add);
+        }
+        return new AnagramIndex(dictionary);
+    }
+
+    /**
+     * Returns the number of distinct words in this index.
+     *
+     * @return the number of words
+     */
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * Returns the words of the dictionary that are anagrams of the given letters.
+     *
+     * @param letters the letters
+     * @return a new list of the anagrams, in alphabetical order
+     */
+    public List<String> anagramsOf(String letters) {
+        int node = 0;
+        for (char c : Anagrams.alphabetize(letters).toCharArray()) {
+            node = child(node, c);
+            if (node < 0)
+                return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(words).subList(wordStart[node], wordStart[node + 1]));
+    }
+
+    private int child(int node, char c) {
+        int letter = Arrays.binarySearch(alphabet, c);
+        if (letter < 0)
+            return -1;
+        int edge = Arrays.binarySearch(childLetter, childStart[node], childStart[node + 1], letter);
+        return (edge < 0) ? -1 : childNode[edge];
+    }
+
+    /**
+     * Returns the words of the dictionary that can be spelled from the given letters, using each
+     * letter at most as many times as it occurs.
+     *
+     * @param letters the letters, e.g. the tiles of a rack
+     * @return a new list of the words
+     */
+    public List<String> wordsFrom(String letters) {
+        return wordsFrom(letters, 1);
+    }
+
+    /**
+     * Returns the words of the dictionary, of at least the given length, that can be spelled from
+     * the given letters, using each letter at most as many times as it occurs.
+     *
+     * @param letters   the letters, e.g. the tiles of a rack
+     * @param minLength the minimum length of the words
+     * @return a new list of the words
+     */
+    public List<String> wordsFrom(String letters, int minLength) {
+        List<String> found = new ArrayList<>();
+        collect(0, 0, counts(letters), minLength, found);
+        return found;
+    }
+
+    /**
+     * Returns the number of words of the dictionary that can be spelled from the given letters.
+     *
+     * @param letters the letters
+     * @return the number of words
+     */
+    public int countWordsFrom(String letters) {
+        return count(0, counts(letters));
+    }
+
+    // The count vector of the given letters, indexed like the alphabet; letters outside it are ignored
+    private int[] counts(String letters) {
+        int[] counts = new int[alphabet.length];
+        for (int i = 0; i < letters.length(); i++) {
+            int letter = Arrays.binarySearch(alphabet, letters.charAt(i));
+            if (letter >= 0)
+                counts[letter]++;
+        }
+        return counts;
+    }
+
+    private void collect(int node, int depth, int[] counts, int minLength, List<String> found) {
+        if (depth >= minLength)
+            for (int w = wordStart[node]; w < wordStart[node + 1]; w++)
+                found.add(words[w]);
+        for (int edge = childStart[node]; edge < childStart[node + 1]; edge++) {
+            int letter = childLetter[edge];
+            if (counts[letter] == 0)
+                continue;
+            counts[letter]--;
+            collect(childNode[edge], depth + 1, counts, minLength, found);
+            counts[letter]++;
+        }
+    }
+
+    private int count(int node, int[] counts) {
+        int count = wordStart[node + 1] - wordStart[node];
+        for (int edge = childStart[node]; edge < childStart[node + 1]; edge++) {
+            int letter = childLetter[edge];
+            if (counts[letter] == 0)
+                continue;
+            counts[letter]--;
+            count += count(childNode[edge], counts);
+            counts[letter]++;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the words that can be spelled from the given letters by scanning the whole dictionary,
+     * and checking the alphabetized form of every word against that of the letters. This is the
+     * baseline the index is measured against.
+     *
+     * @param dictionary the words
+     * @param letters    the letters
+     * @return a new list of the words, in the order of the dictionary
+     */
+    public static List<String> wordsFromByScan(Collection<String> dictionary, String letters) {
+        String rack = Anagrams.alphabetize(letters);
+        List<String> found = new ArrayList<>();
+        for (String word : dictionary)
+            if (isSubsequence(Anagrams.alphabetize(word), rack))
+                found.add(word);
+        return found;
+    }
+
+    // Whether the sorted string s is a sub-multiset of the sorted string of
+    private static boolean isSubsequence(String s, String of) {
+        int j = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            while (j < of.length() && of.charAt(j) < c)
+                j++;
+            if (j == of.length() || of.charAt(j) != c)
+                return false;
+            j++;
+        }
+        return true;
+    }
+
+    public static void main(String[] args) {
+        // A synthetic dictionary; vowels are weighted so that words share letters as in real ones
+        String weighted = "aaaaaeeeeeeiiiiooooouuubccddfgghhklllmmnnnpprrrrsssstttttvwy";
+        SplittableRandom random = new SplittableRandom(5);
+        Set<String> dictionary = new LinkedHashSet<>();
+        while (dictionary.size() < 200_000) {
+            char[] word = new char[2 + random.nextInt(7)];
+            for (int i = 0; i < word.length; i++)
+                word[i] = weighted.charAt(random.nextInt(weighted.length()));
+            dictionary.add(new String(word));
+        }
+
+        long start = System.nanoTime();
+        AnagramIndex index = AnagramIndex.of(dictionary);
+        System.out.printf("indexed %d words in %.1f ms%n", index.size(), (System.nanoTime() - start) / 1e6);
+
+        String[] racks = new String[1_000];
+        for (int i = 0; i < racks.length; i++) {
+            char[] rack = new char[7];
+            for (int j = 0; j < rack.length; j++)
+                rack[j] = weighted.charAt(random.nextInt(weighted.length()));
+            racks[i] = new String(rack);
+        }
+
+        String rack = racks[0];
+        List<String> found = index.wordsFrom(rack);
+        System.out.println(rack + ": " + found.size() + " words, same as scan: "
+                + new HashSet<>(found).equals(new HashSet<>(wordsFromByScan(dictionary, rack))));
+        System.out.println("5+ letter words: " + index.wordsFrom(rack, 5));
+        System.out.println("anagrams of " + found.get(0) + ": " + index.anagramsOf(found.get(0)));
+
+        int scans = 20;
+        for (int round = 0; round < 3; round++) {
+            long indexed = 0;
+            start = System.nanoTime();
+            for (String r : racks)
+                indexed += index.wordsFrom(r).size();
+            long indexTime = System.nanoTime() - start;
+            long scanned = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < scans; i++)
+                scanned += wordsFromByScan(dictionary, racks[i]).size();
+            long scanTime = System.nanoTime() - start;
+            System.out.printf("index %.1f us/query (%d words), scan %.1f us/query (%d words)%n",
+                    indexTime / 1e3 / racks.length, indexed, scanTime / 1e3 / scans, scanned);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * A long-lived service that keeps the anagram groups of a dictionary file up to date as words are
+ * appended to it.
+ * <p>
+ * The methods of {@link Anagrams} reread and regroup the whole file on every run. Here the map
+ * from alphabetized form to anagram group stays in memory, together with the position in the
+ * file up to which it has been read. A {@code WatchService} reports every change to the file, and
+ * the service then reads only the bytes after that position, and adds their words to their
+ * groups. The groups that meet the minimum size are tracked as they grow, so listing them never
+ * scans the map.
+ * <p>
+ * Words are separated by whitespace, as for {@link Anagrams#anagramsIterative}. Only complete
+ * lines are read; a line that is still being written is picked up once its newline is appended.
+ * If the file is replaced, e.g. by a rename or an atomic move, or if it shrinks, the groups are
+ * rebuilt from the start of the file. A replacement is detected from the creation event of the
+ * watcher, and from the file key of the file, where the platform supports file keys.
+ * <p>
+ * A service is thread-safe; the watcher thread updates the groups while clients query them.
+ *
+ * @author Spyros Dellas
+ */
+public final class AnagramService implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path path;
+    private final int minGroupSize;
+
+    // guarded by this
+    private final Map<String, Set<String>> groups = new HashMap<>();
+    private final Set<String> largeGroups = new LinkedHashSet<>();  // the keys of the groups that meet the minimum
+    private long offset = 0;    // the position just after the last complete line read
+    private int wordCount = 0;
+    private Object fileKey;     // the file key of the file read up to offset; null if unsupported
+
+    private final WatchService watcher;
+    private volatile IOException lastFailure;
+
+    private AnagramService(Path path, int minGroupSize) throws IOException {
+        if (minGroupSize <= 0)
+            throw new IllegalArgumentException("Non-positive minimum group size: " + minGroupSize);
+        this.path = path.toAbsolutePath();
+        this.minGroupSize = minGroupSize;
+
+        // Registered before the first read, so that a change made during the read is not missed
+        watcher = this.path.getFileSystem().newWatchService();
+        try {
+            this.path.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+            refresh();
+        } catch (IOException | RuntimeException e) {
+            watcher.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the given dictionary file, and starts watching it for appended words.
+     *
+     * @param path         the file containing the dictionary
+     * @param minGroupSize the minimum size of the groups listed by {@link #largeGroups()}
+     * @return a new service
+     * @throws IOException              if an IO error occurs
+     * @throws IllegalArgumentException if minGroupSize is not positive
+     */
+    public static AnagramService watch(Path path, int minGroupSize) throws IOException {
+        AnagramService service = new AnagramService(path, minGroupSize);
+        // Started here rather than in the constructor, so that this never escapes a half-built object
+        Thread thread = new Thread(service::watch, "anagrams-" + service.path.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+        return service;
+    }
+
+    private void watch() {
+        Path fileName = path.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                boolean replaced = false;   // created anew, so the offset does not apply to it
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        changed = true;
+                    } else if (fileName.equals(event.context())) {
+                        changed = true;
+                        replaced |= event.kind() == ENTRY_CREATE;
+                    }
+                }
+                if (changed) {
+                    try {
+                        read(replaced);
+                    } catch (IOException e) {
+                        lastFailure = e;    // keep watching; the next change may succeed
+                    }
+                }
+                if (!key.reset())
+                    return;     // the directory is gone
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The service has been closed
+        }
+    }
+
+    /**
+     * Reads the words appended to the file since it was last read, or all of its words if it has
+     * been replaced. The watcher thread calls this whenever the file changes; clients only need to call it to see appended words without
+     * waiting for the watcher.
+     *
+     * @return the number of new words
+     * @throws IOException if an IO error occurs
+     */
+    public synchronized int refresh() throws IOException {
+        return read(false);
+    }
+
+    // Reads the file from the offset, or from the start if it has been replaced
+    private synchronized int read(boolean replaced) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Read after opening: if the file is replaced in between, its creation event clears the groups again
+            Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            if (replaced || channel.size() < offset || (key != null && !key.equals(fileKey)))
+                clear();
+            fileKey = key;
+            int added = 0;
+            long position = offset;
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (true) {
+                if (!buffer.hasRemaining())
+                    buffer = grow(buffer);  // a single line fills the buffer
+                int read = channel.read(buffer, position);
+                if (read <= 0)
+                    break;
+                position += read;
+                buffer.flip();
+                // Only consume complete lines; UTF-8 never encodes part of another character as '\n'
+                int end = buffer.limit();
+                while (end > 0 && buffer.get(end - 1) != '\n')
+                    end--;
+                if (end > 0) {
+                    added += addWords(new String(buffer.array(), 0, end, StandardCharsets.UTF_8));
+                    offset += end;
+                }
+                buffer.position(end);
+                buffer.compact();
+            }
+            return added;
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer bigger = ByteBuffer.allocate(2 * buffer.capacity());
+        buffer.flip();
+        return bigger.put(buffer);
+    }
+
+    private void clear() {
+        groups.clear();
+        largeGroups.clear();
+        offset = 0;
+        wordCount = 0;
+    }
+
+    // Adds the whitespace-separated words of the given text to their groups
+    private int addWords(String text) {
+        int added = 0;
+        int i = 0;
+        while (i < text.length()) {
+            while (i < text.length() && Character.isWhitespace(text.charAt(i)))
+                i++;
+            int start = i;
+            while (i < text.length() && !Character.isWhitespace(text.charAt(i)))
+                i++;
+            if (i > start && add(text.substring(start, i)))
+                added++;
+        }
+        return added;
+    }
+
+    private boolean add(String word) {
+        String key = Anagrams.alphabetize(word);
+        Set<String> group = groups.computeIfAbsent(key, unused -> new TreeSet<>());
+        if (!group.add(word))
+            return false;
+        wordCount++;
+        if (group.size() == minGroupSize)
+            largeGroups.add(key);
+        return true;
+    }
+
+    /**
+     * Returns the anagram groups whose size meets the minimum, in the order in which they reached
+     * it.
+     *
+     * @return a new list of copies of the groups
+     */
+    public synchronized List<Set<String>> largeGroups() {
+        List<Set<String>> result = new ArrayList<>(largeGroups.size());
+        for (String key : largeGroups)
+            result.add(new TreeSet<>(groups.get(key)));
+        return result;
+    }
+
+    /**
+     * Returns the anagram group of the given word.
+     *
+     * @param word the word
+     * @return a new set of the words of the dictionary that are anagrams of the word; empty if
+     * there are none
+     */
+    public synchronized Set<String> groupOf(String word) {
+        Set<String> group = groups.get(Anagrams.alphabetize(word));
+        return (group == null) ? new TreeSet<>() : new TreeSet<>(group);
+    }
+
+    public synchronized int wordCount() {
+        return wordCount;
+    }
+
+    public synchronized int groupCount() {
+        return groups.size();
+    }
+
+    /**
+     * Returns the position in the file up to which it has been read.
+     *
+     * @return the position just after the last complete line read
+     */
+    public synchronized long offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the last failure of the watcher thread to read the file, if any.
+     *
+     * @return the last failure, or null if there has been none
+     */
+    public IOException lastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Stops watching the file. The groups can still be queried and refreshed.
+     *
+     * @throws IOException if an IO error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path dictionary = Files.createTempFile("dictionary", ".txt");
+        try {
+            Files.write(dictionary, List.of("stop", "pots", "tops", "opts", "listen", "silent"));
+            try (AnagramService service = AnagramService.watch(dictionary, 3)) {
+                print(service);
+
+                // An append, with a line that is still being written
+                Files.writeString(dictionary, "enlist\ntinsel\npost\nspot inlets\nspo", StandardOpenOption.APPEND);
+                long appended = Files.size(dictionary) - 3;
+                System.out.println("seen by the watcher: " + await(service, () -> service.offset() >= appended));
+                print(service);
+
+                // The rest of the line
+                Files.writeString(dictionary, "ts\n", StandardOpenOption.APPEND);
+                long completed = Files.size(dictionary);
+                System.out.println("seen by the watcher: " + await(service, () -> service.offset() >= completed));
+                print(service);
+                System.out.println("group of 'stop': " + service.groupOf("stop"));
+
+                // A new dictionary, longer than the old one, moved into place
+                Path replacement = Files.createTempFile(dictionary.getParent(), "dictionary", ".tmp");
+                Files.write(replacement, List.of("evil", "vile", "live", "veil", "angel", "angle", "glean",
+                        "remain", "marine", "airmen", "mariner", "reclaim"));
+                Files.move(replacement, dictionary, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                System.out.println("seen by the watcher: " + await(service, () -> service.groupOf("stop").isEmpty()));
+                print(service);
+            }
+        } finally {
+            Files.deleteIfExists(dictionary);
+        }
+    }
+
+    /*
+     * Waits for the watcher to bring the service to the given state, for at most ten seconds, and
+     * then refreshes explicitly; some platforms only poll for changes every few seconds. Returns
+     * true if the watcher caught up in time.
+     */
+    private static boolean await(AnagramService service, BooleanSupplier caughtUp)
+            throws IOException, InterruptedException {
+        for (int i = 0; i < 100 && !caughtUp.getAsBoolean(); i++)
+            Thread.sleep(100);
+        if (caughtUp.getAsBoolean())
+            return true;
+        service.refresh();
+        return false;
+    }
+
+    private static void print(AnagramService service) {
+        System.out.println(service.wordCount() + " words, " + service.groupCount() + " groups, offset "
+                + service.offset());
+        for (Set<String> group : service.largeGroups())
+            System.out.println("  " + group.size() + ": " + group);
+    }
+}
@@ -24,7 +24,7 @@ public class Anagrams {
      * the words that share an alphabetized form
      *
      */
-    private static String alphabetize(String s) {
+    static String alphabetize(String s) {
         char[] a = s.toCharArray();
         Arrays.sort(a);
         return new String(a);
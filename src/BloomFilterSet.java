@@ -0,0 +1,306 @@
+import java.util.*;
+
+/**
+ * A decorator that puts a Bloom filter in front of an expensive set, such as a large
+ * {@code TreeSet} or a disk-backed set, so that most negative {@code contains} lookups are answered
+ * without touching the wrapped set.
+ * <p>
+ * The filter is a blocked Bloom filter: every element maps to a single 512-bit block, the size
+ * of a cache line, and sets all of its k bits within that block. A lookup therefore costs one
+ * cache miss at most, at the price of a slightly higher false-positive rate than a classic
+ * Bloom filter of the same size.
+ * <p>
+ * A Bloom filter can't forget an element, so removals leave stale bits behind. Stale bits never
+ * cause a wrong answer by themselves, only extra false positives, so the filter is rebuilt lazily, on the first
+ * lookup after the removals since the last rebuild reach half the size of the set. The filter is
+ * also rebuilt, with twice the capacity, once the set outgrows the capacity it was sized for.
+ * <p>
+ * Note:
+ * The filter uses {@code hashCode}, so it is only correct if the wrapped set's notion of
+ * equality agrees with {@code equals}. This holds for a {@code TreeSet} only if its ordering is
+ * consistent with equals, which it should be anyway. Like the sets it wraps, this class is not
+ * thread-safe.
+ * <p>
+ * Every mutation must go through this set. The filter only learns of the elements added through
+ * it, so once a set has been wrapped, it must not be used directly: an element added straight to
+ * the wrapped set is missing from the filter, and {@code contains} then reports it absent.
+ *
+ * @author Spyros Dellas
+ */
+public class BloomFilterSet<E> extends ForwardingSet<E> implements Metered {
+
+    private static final int BLOCK_LONGS = 8;                  // 8 longs = 512 bits = one cache line
+    private static final int BLOCK_BITS = BLOCK_LONGS * Long.SIZE;
+
+    private final double falsePositiveRate;
+
+    private long[] bits;
+    private int blocks;
+    private int hashes;     // the number of bits set per element, k
+    private int capacity;   // the number of elements the filter is sized for
+
+    private int staleRemovals = 0;   // removals since the filter was last built
+
+    // statistics
+    private long filteredMisses = 0;     // lookups answered by the filter alone
+    private long hits = 0;               // lookups the filter passed on that found the element
+    private long falsePositives = 0;     // lookups the filter passed on that didn't
+    private long rebuilds = 0;
+
+    /**
+     * Creates a Bloom filter front for the given set.
+     *
+     * @param s                 the set to wrap; any elements it already holds are added to the filter.
+     *                          It must not be used directly afterwards
+     * @param expectedSize      the number of elements the filter is initially sized for
+     * @param falsePositiveRate the desired false-positive rate, between 0 and 1 exclusive
+     * @throws IllegalArgumentException if expectedSize is negative or the rate is out of range
+     */
+    public BloomFilterSet(Set<E> s, int expectedSize, double falsePositiveRate) {
+        super(s);
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Negative expected size: " + expectedSize);
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+            throw new IllegalArgumentException("False-positive rate out of range: " + falsePositiveRate);
+        this.falsePositiveRate = falsePositiveRate;
+        rebuild(Math.max(expectedSize, s.size()));
+    }
+
+    /**
+     * Creates a Bloom filter front for the given set with a false-positive rate of 1%.
+     *
+     * @param s            the set to wrap; it must not be used directly afterwards
+     * @param expectedSize the number of elements the filter is initially sized for
+     */
+    public BloomFilterSet(Set<E> s, int expectedSize) {
+        this(s, expectedSize, 0.01);
+    }
+
+    /*
+     * Sizes the filter for the given capacity and adds every element of the wrapped set to it.
+     *
+     * The optimal number of bits for n elements and false-positive rate p is -n ln p / (ln 2)^2,
+     * and the optimal number of hashes is (bits / n) ln 2.
+     */
+    private void rebuild(int capacity) {
+        this.capacity = Math.max(capacity, 16);
+        double bitsPerElement = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long totalBits = (long) Math.ceil(this.capacity * bitsPerElement);
+        blocks = (int) Math.min((totalBits + BLOCK_BITS - 1) / BLOCK_BITS, Integer.MAX_VALUE / BLOCK_LONGS);
+        hashes = Math.max(1, Math.min(16, (int) Math.round(bitsPerElement * Math.log(2))));
+        bits = new long[blocks * BLOCK_LONGS];
+        for (E e : this)
+            put(e);
+        staleRemovals = 0;
+        rebuilds++;
+    }
+
+    // The finalizer of MurmurHash3; turns a weak 32-bit hash code into 64 well-mixed bits
+    private static long mix(Object o) {
+        long h = (o == null) ? 0 : o.hashCode();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /*
+     * The upper 32 bits of the hash select the block, by multiplication rather than by
+     * remainder; the lower 32 bits generate the k bit positions within it by double hashing.
+     */
+    private void put(Object o) {
+        long h = mix(o);
+        int base = (int) (((h >>> 32) * blocks) >>> 32) * BLOCK_LONGS;
+        int h1 = (int) h;
+        int h2 = (h1 >>> 16) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            bits[base + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(Object o) {
+        long h = mix(o);
+        int base = (int) (((h >>> 32) * blocks) >>> 32) * BLOCK_LONGS;
+        int h1 = (int) h;
+        int h2 = (h1 >>> 16) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            if ((bits[base + (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (staleRemovals > 0 && staleRemovals >= size() / 2)
+            rebuild(capacity);
+        if (!mightContain(o)) {
+            filteredMisses++;
+            return false;
+        }
+        boolean result = super.contains(o);
+        if (result)
+            hits++;
+        else
+            falsePositives++;
+        return result;
+    }
+
+    @Override
+    public boolean add(E e) {
+        boolean result = super.add(e);
+        if (result) {
+            if (size() > capacity)
+                rebuild(2 * capacity);
+            else
+                put(e);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        boolean result = super.addAll(c);
+        if (size() > capacity) {
+            rebuild(Math.max(2 * capacity, size()));
+        } else {
+            for (E e : c)
+                put(e);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        boolean result = super.remove(o);
+        if (result)
+            staleRemovals++;
+        return result;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        int before = size();
+        boolean result = super.removeAll(c);
+        staleRemovals += before - size();
+        return result;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        int before = size();
+        boolean result = super.retainAll(c);
+        staleRemovals += before - size();
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(bits, 0);
+        staleRemovals = 0;
+    }
+
+    // Removals through the iterator leave stale bits behind too
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<E> i = super.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return i.next();
+            }
+
+            @Override
+            public void remove() {
+                i.remove();
+                staleRemovals++;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of {@code contains} lookups that the filter answered on its own.
+     *
+     * @return the number of filtered misses
+     */
+    public long getFilteredMissCount() {
+        return filteredMisses;
+    }
+
+    /**
+     * Returns the number of {@code contains} lookups that reached the wrapped set and found the element.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of {@code contains} lookups that reached the wrapped set but didn't find
+     * the element.
+     *
+     * @return the number of false positives
+     */
+    public long getFalsePositiveCount() {
+        return falsePositives;
+    }
+
+    /**
+     * Returns the fraction of negative lookups that the filter failed to answer on its own.
+     *
+     * @return the observed false-positive rate, or 0 if there have been no negative lookups
+     */
+    public double getObservedFalsePositiveRate() {
+        long negatives = filteredMisses + falsePositives;
+        return (negatives == 0) ? 0 : (double) falsePositives / negatives;
+    }
+
+    @Override
+    public Map<String, Long> counters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("filteredMisses", filteredMisses);
+        counters.put("hits", hits);
+        counters.put("falsePositives", falsePositives);
+        counters.put("rebuilds", rebuilds);
+        return counters;
+    }
+
+    @Override
+    public Map<String, Number> gauges() {
+        Map<String, Number> gauges = new LinkedHashMap<>();
+        gauges.put("size", size());
+        gauges.put("capacity", capacity);
+        gauges.put("observedFalsePositiveRate", getObservedFalsePositiveRate());
+        return gauges;
+    }
+
+    /**
+     * Test client.
+     */
+    public static void main(String[] args) {
+        BloomFilterSet<Integer> set = new BloomFilterSet<>(new TreeSet<>(), 10_000);
+        for (int i = 0; i < 20_000; i += 2)
+            set.add(i);
+        int found = 0;
+        for (int i = 0; i < 200_000; i++)
+            if (set.contains(i))
+                found++;
+        System.out.println("found " + found + ": " + set.counters()
+                + ", observed false-positive rate = " + set.getObservedFalsePositiveRate());
+
+        set.removeIf(i -> i % 4 == 0);
+        System.out.println("contains(4) = " + set.contains(4) + ", contains(6) = " + set.contains(6)
+                + ", " + set.counters());
+    }
+}
@@ -0,0 +1,432 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * A set of bounded capacity that evicts elements using the W-TinyLFU policy, for use as a
+ * "seen recently" set whose memory stays flat no matter how many distinct elements it sees.
+ * <p>
+ * W-TinyLFU keeps a small LRU <em>window</em> (1% of the capacity) in front of a large segmented
+ * LRU <em>main</em> region, which is split into a <em>probation</em> segment (20%) and a
+ * <em>protected</em> segment (80%). New elements enter the window. When the window overflows, its
+ * least recently used element becomes a candidate for the main region and competes with the
+ * main region's own eviction victim: the one that has been seen more often, as estimated by a
+ * count-min sketch of recent access frequencies, stays and the other is evicted. An element in
+ * probation that is accessed again is promoted to the protected segment.
+ * <p>
+ * The window lets bursts of new elements in, the frequency filter keeps one-hit wonders from
+ * flushing out popular elements, and the sketch halves all its counters periodically so that
+ * old popularity fades. Together they keep the hit ratio close to optimal across a wide range
+ * of workloads. All operations are amortized O(1).
+ * <p>
+ * Membership is held by the key set of an internal map, to which this class forwards the
+ * read-only {@code Set} methods. Both {@code add} and {@code contains} count as accesses.
+ * This class is not thread-safe.
+ *
+ * @param <E> the type of elements in this set
+ * @author Spyros Dellas
+ */
+public class BoundedSet<E> extends ForwardingSet<E> implements Metered {
+
+    // The queue a node is in
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final Map<E, Node<E>> nodes;
+    private final int capacity;
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    private final Consumer<? super E> evictionListener;
+    private final FrequencySketch sketch;
+
+    // Each queue is a circular doubly-linked list with a sentinel; the head's next is the MRU node
+    private final Node<E> window = Node.sentinel();
+    private final Node<E> probation = Node.sentinel();
+    private final Node<E> protectedSegment = Node.sentinel();
+    private int windowSize = 0;
+    private int protectedSize = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Creates a bounded set that notifies the given listener of every eviction.
+     *
+     * @param capacity         the maximum number of elements in this set
+     * @param evictionListener called with each evicted element
+     * @throws IllegalArgumentException if capacity is not positive
+     * @throws NullPointerException     if the listener is null
+     */
+    public BoundedSet(int capacity, Consumer<? super E> evictionListener) {
+        this(new HashMap<>(), capacity, evictionListener);
+    }
+
+    /**
+     * Creates a bounded set.
+     *
+     * @param capacity the maximum number of elements in this set
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public BoundedSet(int capacity) {
+        this(capacity, e -> {
+        });
+    }
+
+    private BoundedSet(Map<E, Node<E>> nodes, int capacity, Consumer<? super E> evictionListener) {
+        super(nodes.keySet());
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Non-positive capacity: " + capacity);
+        this.nodes = nodes;
+        this.capacity = capacity;
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.protectedCapacity = (int) ((capacity - windowCapacity) * 0.8);
+        this.evictionListener = Objects.requireNonNull(evictionListener);
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        sketch.increment(o);
+        Node<E> node = nodes.get(o);
+        if (node == null) {
+            misses++;
+            return false;
+        }
+        hits++;
+        onAccess(node);
+        return true;
+    }
+
+    /**
+     * Adds the specified element to this set, evicting another element if the set is full.
+     * <p>
+     * A new element always enters at the front of the window, so it is present right after
+     * this call returns; the admission decision only ever concerns older elements.
+     *
+     * @param e the element to add
+     * @return true if this set did not already contain the element
+     */
+    @Override
+    public boolean add(E e) {
+        sketch.increment(e);
+        Node<E> node = nodes.get(e);
+        if (node != null) {
+            hits++;
+            onAccess(node);
+            return false;
+        }
+        misses++;
+        node = new Node<>(e);
+        nodes.put(e, node);
+        node.queue = WINDOW;
+        linkFirst(window, node);
+        windowSize++;
+        if (windowSize > windowCapacity)
+            evictFromWindow();
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        boolean modified = false;
+        for (E e : c)
+            modified |= add(e);
+        return modified;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        Node<E> node = nodes.remove(o);
+        if (node == null)
+            return false;
+        unlinkFromQueue(node);
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean modified = false;
+        for (Object o : c)
+            modified |= remove(o);
+        return modified;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        boolean modified = false;
+        for (Iterator<E> i = iterator(); i.hasNext(); ) {
+            if (!c.contains(i.next())) {
+                i.remove();
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    @Override
+    public void clear() {
+        nodes.clear();
+        for (Node<E> head : List.of(window, probation, protectedSegment))
+            head.prev = head.next = head;
+        windowSize = protectedSize = 0;
+    }
+
+    // Removals through the iterator must also unlink the element's node from its queue
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<Map.Entry<E, Node<E>>> i = nodes.entrySet().iterator();
+        return new Iterator<>() {
+            private Node<E> last;
+
+            @Override
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+
+            @Override
+            public E next() {
+                last = i.next().getValue();
+                return last.key;
+            }
+
+            @Override
+            public void remove() {
+                i.remove();
+                unlinkFromQueue(last);
+            }
+        };
+    }
+
+    /*
+     * The window's LRU element becomes a candidate for the main region. If the main region is
+     * full, the candidate and the main region's victim, the LRU element of the probation segment,
+     * compete on estimated frequency and the loser is evicted. Ties go to the victim, because a
+     * candidate that has been seen no more often than the victim is unlikely to be worth more.
+     */
+    private void evictFromWindow() {
+        Node<E> candidate = window.prev;
+        unlink(candidate);
+        windowSize--;
+        candidate.queue = PROBATION;
+        linkFirst(probation, candidate);
+        if (nodes.size() <= capacity)
+            return;
+
+        Node<E> victim = probation.prev;
+        if (victim == candidate) {
+            // the probation segment held nothing but the candidate; evict from protected instead
+            victim = protectedSegment.prev;
+            if (victim == protectedSegment)
+                victim = candidate;
+        } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+            // the candidate wins
+        } else {
+            victim = candidate;
+        }
+        evict(victim);
+    }
+
+    private void evict(Node<E> node) {
+        nodes.remove(node.key);
+        unlinkFromQueue(node);
+        evictions++;
+        evictionListener.accept(node.key);
+    }
+
+    private void onAccess(Node<E> node) {
+        switch (node.queue) {
+            case WINDOW:
+                moveToFront(window, node);
+                break;
+            case PROBATION:
+                // promote to protected, demoting the protected LRU element if it overflows
+                unlink(node);
+                node.queue = PROTECTED;
+                linkFirst(protectedSegment, node);
+                protectedSize++;
+                if (protectedSize > protectedCapacity && protectedSegment.prev != node) {
+                    Node<E> demoted = protectedSegment.prev;
+                    unlink(demoted);
+                    protectedSize--;
+                    demoted.queue = PROBATION;
+                    linkFirst(probation, demoted);
+                }
+                break;
+            default:
+                moveToFront(protectedSegment, node);
+        }
+    }
+
+    private void unlinkFromQueue(Node<E> node) {
+        unlink(node);
+        if (node.queue == WINDOW)
+            windowSize--;
+        else if (node.queue == PROTECTED)
+            protectedSize--;
+    }
+
+    private static <E> void linkFirst(Node<E> head, Node<E> node) {
+        node.prev = head;
+        node.next = head.next;
+        head.next.prev = node;
+        head.next = node;
+    }
+
+    private static <E> void unlink(Node<E> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node.next = null;
+    }
+
+    private static <E> void moveToFront(Node<E> head, Node<E> node) {
+        unlink(node);
+        linkFirst(head, node);
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    public long getMissCount() {
+        return misses;
+    }
+
+    public long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns the fraction of accesses that found the element in this set.
+     *
+     * @return the hit rate, or 0 if there have been no accesses
+     */
+    public double getHitRate() {
+        long accesses = hits + misses;
+        return (accesses == 0) ? 0 : (double) hits / accesses;
+    }
+
+    @Override
+    public Map<String, Long> counters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("hits", hits);
+        counters.put("misses", misses);
+        counters.put("evictions", evictions);
+        return counters;
+    }
+
+    @Override
+    public Map<String, Number> gauges() {
+        Map<String, Number> gauges = new LinkedHashMap<>();
+        gauges.put("size", size());
+        gauges.put("capacity", capacity);
+        gauges.put("hitRate", getHitRate());
+        return gauges;
+    }
+
+    private static final class Node<E> {
+        final E key;
+        Node<E> prev;
+        Node<E> next;
+        byte queue;
+
+        Node(E key) {
+            this.key = key;
+        }
+
+        static <E> Node<E> sentinel() {
+            Node<E> head = new Node<>(null);
+            head.prev = head.next = head;
+            return head;
+        }
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters, which estimates how often each element has been
+     * seen recently.
+     * <p>
+     * Each element maps to one counter in each of four rows, and its estimated frequency is the
+     * minimum of the four. Sixteen counters are packed into each {@code long}, and the four
+     * counters of an element are taken from different positions of four different words. Once
+     * the sketch has counted ten times as many increments as the set's capacity, every counter is
+     * halved, so that the sketch favours recent popularity.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int sampleSize;
+        private int additions = 0;
+
+        FrequencySketch(int capacity) {
+            int length = Math.max(8, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+            table = new long[length];
+            sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+        }
+
+        private static int spread(Object o) {
+            int h = (o == null) ? 0 : o.hashCode();
+            h = ((h >>> 16) ^ h) * 0x45d9f3b;
+            return (h >>> 16) ^ h;
+        }
+
+        private int indexOf(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h & (table.length - 1);
+        }
+
+        int frequency(Object o) {
+            int hash = spread(o);
+            int start = (hash & 3) << 2;    // each row reads a different quarter of its word
+            int frequency = Integer.MAX_VALUE;
+            for (int row = 0; row < 4; row++) {
+                int offset = (start + row) << 2;
+                frequency = Math.min(frequency, (int) ((table[indexOf(hash, row)] >>> offset) & 0xf));
+            }
+            return frequency;
+        }
+
+        void increment(Object o) {
+            int hash = spread(o);
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int row = 0; row < 4; row++) {
+                int index = indexOf(hash, row);
+                int offset = (start + row) << 2;
+                long mask = 0xfL << offset;
+                if ((table[index] & mask) != mask) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize)
+                reset();
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++)
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            additions /= 2;
+        }
+    }
+
+    /**
+     * Test client; a skewed workload in which a few hot elements are mixed with a long tail of
+     * elements that are seen only once.
+     */
+    public static void main(String[] args) {
+        BoundedSet<Integer> seen = new BoundedSet<>(1000);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 1_000_000; i++) {
+            int element = (random.nextInt(4) == 0) ? 1_000_000 + i : random.nextInt(500);
+            seen.add(element);
+        }
+        System.out.printf("size = %d, evictions = %d, hit rate = %.3f%n",
+                seen.size(), seen.getEvictionCount(), seen.getHitRate());
+    }
+}
@@ -1,11 +1,16 @@
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 
 /**
  * This class demonstrates usage of streams instead of a nested for-loop.
+ * <p>
+ * There are only 52 distinct cards, so they are cached as flyweights; {@link #of(Suit, Rank)}
+ * returns the canonical instance instead of allocating a new one. Each card also has a compact
+ * encoding, {@code suit * 13 + rank}, that fits in a {@code byte} and is used by {@link Deck}.
  *
  * @author Spyros Dellas
  */
@@ -20,12 +25,83 @@ public class Card {
         DIAMONDS, SPADES, HEARTS, CLUBS
     }
 
+    private static final Rank[] RANKS = Rank.values();
+    private static final Suit[] SUITS = Suit.values();
+
+    /**
+     * The number of distinct cards.
+     */
+    public static final int COUNT = SUITS.length * RANKS.length;
+
+    // The canonical cards, indexed by code
+    private static final Card[] CARDS = new Card[COUNT];
+
+    static {
+        for (Suit suit : SUITS)
+            for (Rank rank : RANKS)
+                CARDS[encode(suit, rank)] = new Card(suit, rank);
+    }
+
     private final Rank rank;
     private final Suit suit;
+    private final byte code;
 
-    public Card(Suit suit, Rank rank) {
+    private Card(Suit suit, Rank rank) {
         this.suit = suit;
         this.rank = rank;
+        this.code = (byte) encode(suit, rank);
+    }
+
+    /**
+     * Returns the card with the given suit and rank.
+     *
+     * @param suit the suit
+     * @param rank the rank
+     * @return the canonical instance of the card
+     */
+    public static Card of(Suit suit, Rank rank) {
+        return CARDS[encode(suit, rank)];
+    }
+
+    /**
+     * Returns the card with the given code.
+     *
+     * @param code the code of the card, as returned by {@link #code()}
+     * @return the canonical instance of the card
+     * @throws IndexOutOfBoundsException if code is not between 0 and 51
+     */
+    public static Card of(int code) {
+        return CARDS[Objects.checkIndex(code, COUNT)];
+    }
+
+    // Throws NullPointerException if either argument is null
+    private static int encode(Suit suit, Rank rank) {
+        return suit.ordinal() * RANKS.length + rank.ordinal();
+    }
+
+    /**
+     * Returns the code of this card, {@code suit.ordinal() * 13 + rank.ordinal()}.
+     *
+     * @return the code of this card, between 0 and 51
+     */
+    public byte code() {
+        return code;
+    }
+
+    public Suit suit() {
+        return suit;
+    }
+
+    public Rank rank() {
+        return rank;
+    }
+
+    public static Suit suitOf(int code) {
+        return SUITS[Objects.checkIndex(code, COUNT) / RANKS.length];
+    }
+
+    public static Rank rankOf(int code) {
+        return RANKS[Objects.checkIndex(code, COUNT) % RANKS.length];
     }
 
     @Override
@@ -39,10 +115,10 @@ public class Card {
      * @return the deck of cards
      */
     public static List<Card> newDeckIterative() {
-        List<Card> deck = new ArrayList<>();
+        List<Card> deck = new ArrayList<>(COUNT);
         for (Suit suit : Suit.values()) {
             for (Rank rank : Rank.values()) {
-                deck.add(new Card(suit, rank));
+                deck.add(Card.of(suit, rank));
             }
         }
         return deck;
@@ -59,7 +135,7 @@ public class Card {
      */
     public static List<Card> newDeckStreamBased() {
         return Stream.of(Suit.values())
-                .flatMap(suit -> Stream.of(Rank.values()).map(rank -> new Card(suit, rank)))
+                .flatMap(suit -> Stream.of(Rank.values()).map(rank -> Card.of(suit, rank)))
                 .collect(toList());
     }
 
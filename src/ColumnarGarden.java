@@ -0,0 +1,210 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * A garden that stores its plants column by column, for inventories of tens of millions of plants.
+ * <p>
+ * {@link Garden} holds one {@code Plant} object per plant, and every grouping query builds a
+ * fresh {@code HashSet} of them. Here a plant is just a row: its name is interned into a
+ * dictionary and stored as an {@code int} id, and its life cycle is stored as a {@code byte}
+ * ordinal. On top of the columns we keep one {@code BitSet} per {@code Plant.LifeCycle}, so
+ * counting or enumerating the plants of a life cycle never touches the other rows.
+ * <p>
+ * {@code Plant} objects are only materialized on demand.
+ *
+ * @author Spyros Dellas
+ */
+public class ColumnarGarden {
+
+    private static final Plant.LifeCycle[] LIFE_CYCLES = Plant.LifeCycle.values();
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // Rows per task in the parallel grouping; large enough to amortize the cost of a task
+    private static final int CHUNK = 1 << 16;
+
+    // the name dictionary
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    // the columns
+    private int[] nameColumn;
+    private byte[] lifeCycleColumn;
+    private int size = 0;
+
+    // the index; the rows of each life cycle, by ordinal
+    private final BitSet[] index = new BitSet[LIFE_CYCLES.length];
+
+    /**
+     * Creates an empty garden with room for the given number of plants.
+     *
+     * @param initialCapacity the initial number of rows
+     * @throws IllegalArgumentException if initialCapacity is negative
+     */
+    public ColumnarGarden(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+        nameColumn = new int[initialCapacity];
+        lifeCycleColumn = new byte[initialCapacity];
+        for (int i = 0; i < index.length; i++)
+            index[i] = new BitSet();
+    }
+
+    public ColumnarGarden() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Adds a plant to this garden.
+     *
+     * @param name      the name of the plant
+     * @param lifeCycle the life cycle of the plant
+     * @return the row of the new plant
+     * @throws NullPointerException if any argument is null
+     */
+    public int add(String name, Plant.LifeCycle lifeCycle) {
+        Objects.requireNonNull(lifeCycle);
+        int nameId = nameIds.computeIfAbsent(Objects.requireNonNull(name), n -> {
+            names.add(n);
+            return names.size() - 1;
+        });
+        if (size == nameColumn.length) {
+            int capacity = Math.max(DEFAULT_CAPACITY, 2 * size);
+            nameColumn = Arrays.copyOf(nameColumn, capacity);
+            lifeCycleColumn = Arrays.copyOf(lifeCycleColumn, capacity);
+        }
+        nameColumn[size] = nameId;
+        lifeCycleColumn[size] = (byte) lifeCycle.ordinal();
+        index[lifeCycle.ordinal()].set(size);
+        return size++;
+    }
+
+    /**
+     * Adds the given plant to this garden.
+     *
+     * @param plant the plant
+     * @return the row of the new plant
+     */
+    public int add(Plant plant) {
+        return add(plant.name, plant.lifeCycle);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of distinct plant names in this garden.
+     *
+     * @return the size of the name dictionary
+     */
+    public int distinctNames() {
+        return names.size();
+    }
+
+    public String name(int row) {
+        return names.get(nameColumn[Objects.checkIndex(row, size)]);
+    }
+
+    public Plant.LifeCycle lifeCycle(int row) {
+        return LIFE_CYCLES[lifeCycleColumn[Objects.checkIndex(row, size)]];
+    }
+
+    /**
+     * Materializes the plant in the given row.
+     *
+     * @param row the row
+     * @return a new {@code Plant} for the row
+     * @throws IndexOutOfBoundsException if the row is out of range
+     */
+    public Plant plant(int row) {
+        return new Plant(name(row), lifeCycle(row));
+    }
+
+    /**
+     * Returns the rows of the plants with the given life cycle.
+     *
+     * @param lifeCycle the life cycle
+     * @return a new {@code BitSet} with a bit set for each matching row
+     */
+    public BitSet rows(Plant.LifeCycle lifeCycle) {
+        return (BitSet) index[lifeCycle.ordinal()].clone();
+    }
+
+    /**
+     * Counts the plants of each life cycle, using the index.
+     *
+     * @return the number of plants of each life cycle
+     */
+    public Map<Plant.LifeCycle, Integer> countByLifeCycle() {
+        Map<Plant.LifeCycle, Integer> counts = new EnumMap<>(Plant.LifeCycle.class);
+        for (Plant.LifeCycle lc : LIFE_CYCLES)
+            counts.put(lc, index[lc.ordinal()].cardinality());
+        return counts;
+    }
+
+    /**
+     * Counts the plants of each life cycle by scanning the life cycle column in parallel.
+     * <p>
+     * The column is split into chunks; each chunk is counted into its own array indexed by
+     * ordinal, the arrays are summed pairwise as the parallel tasks complete, and only the final
+     * array is turned into an {@code EnumMap}. No task shares mutable state with another, and no
+     * boxing happens until the very end.
+     * <p>
+     * This path doesn't need the index, so it also serves to verify it.
+     *
+     * @return the number of plants of each life cycle
+     */
+    public Map<Plant.LifeCycle, Integer> countByLifeCycleParallel() {
+        byte[] column = lifeCycleColumn;
+        int rows = size;
+        int[] totals = IntStream.range(0, (rows + CHUNK - 1) / CHUNK)
+                .parallel()
+                .collect(() -> new int[LIFE_CYCLES.length],
+                        (counts, chunk) -> {
+                            for (int i = chunk * CHUNK, end = Math.min(rows, i + CHUNK); i < end; i++)
+                                counts[column[i]]++;
+                        },
+                        (left, right) -> {
+                            for (int i = 0; i < left.length; i++)
+                                left[i] += right[i];
+                        });
+        Map<Plant.LifeCycle, Integer> counts = new EnumMap<>(Plant.LifeCycle.class);
+        for (Plant.LifeCycle lc : LIFE_CYCLES)
+            counts.put(lc, totals[lc.ordinal()]);
+        return counts;
+    }
+
+    /**
+     * Lists the names of the plants of each life cycle, using the index.
+     * <p>
+     * Each distinct name is listed once per life cycle. This differs from the {@code Set}s
+     * returned by {@link Garden#listByLifeCycle()}: {@code Plant} doesn't override
+     * {@code equals}, so those hold every plant separately, even plants of the same name.
+     *
+     * @return the names of the plants of each life cycle
+     */
+    public Map<Plant.LifeCycle, Set<String>> namesByLifeCycle() {
+        Map<Plant.LifeCycle, Set<String>> byLifeCycle = new EnumMap<>(Plant.LifeCycle.class);
+        for (Plant.LifeCycle lc : LIFE_CYCLES) {
+            Set<String> set = new LinkedHashSet<>();
+            BitSet rows = index[lc.ordinal()];
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1))
+                set.add(names.get(nameColumn[row]));
+            byLifeCycle.put(lc, set);
+        }
+        return byLifeCycle;
+    }
+
+    public static void main(String[] args) {
+        String[] species = {"Daffodil", "Petunia", "Grass", "Poppies", "Brussels Sprouts"};
+        ColumnarGarden garden = new ColumnarGarden(10_000_000);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 10_000_000; i++)
+            garden.add(species[random.nextInt(species.length)],
+                    LIFE_CYCLES[random.nextInt(LIFE_CYCLES.length)]);
+        System.out.println("distinct names: " + garden.distinctNames());
+        System.out.println("counts (index):    " + garden.countByLifeCycle());
+        System.out.println("counts (parallel): " + garden.countByLifeCycleParallel());
+        System.out.println("first plant: " + garden.plant(0) + ", " + garden.lifeCycle(0));
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A concurrent typesafe heterogeneous container, with the same API as {@link Favorites}.
+ * <p>
+ * {@code Favorites} keeps its instances in a {@code HashMap}, which is unsafe to update
+ * concurrently and costs a hash lookup plus a {@code Class.cast} on every read. Here every type
+ * gets its own slot, found through a {@code ClassValue}. A {@code ClassValue} caches its value in
+ * the {@code Class} object itself, so looking up the slot of a type costs a few loads once it has
+ * been computed, and the slot's {@code volatile} field makes every favorite safely published to
+ * all readers. After the first read of each type, reads never lock and never allocate; the first
+ * one computes the slot, which allocates it and may lock inside the {@code ClassValue}.
+ * <p>
+ * Unlike {@code Favorites}, we check the type of an instance when it is put, which makes the
+ * container robust against clients that use a {@code Class} object in its raw form, and lets us
+ * skip the cast when the instance is read.
+ * <p>
+ * Note:
+ * A {@code ClassValue} holds its values for as long as both the {@code ClassValue} and the
+ * {@code Class} are reachable, so this container is meant for long-lived registries of
+ * singletons rather than for large numbers of short-lived instances.
+ *
+ * @author Spyros Dellas
+ */
+public class ConcurrentFavorites {
+
+    private static final class Slot {
+        volatile Object instance;
+    }
+
+    private final ClassValue<Slot> slots = new ClassValue<>() {
+        @Override
+        protected Slot computeValue(Class<?> type) {
+            return new Slot();
+        }
+    };
+
+    /**
+     * Makes the given instance the favorite of the given type.
+     *
+     * @param type     the type
+     * @param instance the favorite instance of the type, or null to remove it
+     * @throws ClassCastException   if the instance is not of the given type
+     * @throws NullPointerException if the type is null
+     */
+    public <T> void putFavorite(Class<T> type, T instance) {
+        slots.get(Objects.requireNonNull(type)).instance = type.cast(instance);
+    }
+
+    /**
+     * Returns the favorite instance of the given type.
+     *
+     * @param type the type
+     * @return the favorite instance of the type, or null if it has none
+     * @throws NullPointerException if the type is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getFavorite(Class<T> type) {
+        // this is a safe cast; putFavorite only stores instances of the type of the slot
+        return (T) slots.get(type).instance;
+    }
+
+    /**
+     * Test client.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentFavorites f = new ConcurrentFavorites();
+
+        f.putFavorite(String.class, "Java");
+        f.putFavorite(Integer.class, 0xcafebabe);
+        f.putFavorite(Class.class, ConcurrentFavorites.class);
+
+        String favoriteString = f.getFavorite(String.class);
+        int favoriteInteger = f.getFavorite(Integer.class);
+        Class<?> favoriteClass = f.getFavorite(Class.class);
+
+        System.out.printf("%s %n%x %n%s %n", favoriteString, favoriteInteger, favoriteClass.getName());
+
+        // A writer and a reader running concurrently; the reader only ever sees complete values
+        CountDownLatch done = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            for (long i = 0; i < 1_000_000; i++)
+                f.putFavorite(Long.class, i);
+            done.countDown();
+        });
+        writer.start();
+        long reads = 0;
+        while (done.getCount() != 0) {
+            Long value = f.getFavorite(Long.class);
+            if (value != null)
+                reads++;
+        }
+        System.out.println(reads + " reads, last value " + f.getFavorite(Long.class));
+    }
+}
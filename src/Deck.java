@@ -0,0 +1,235 @@
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * A deck of playing cards, for simulations that deal millions of decks.
+ * <p>
+ * A deck holds no {@code Card} objects. The cards still in the deck are kept as a {@code long}
+ * bitmask, with bit i set if the card with code i is in the deck, and the order in which they
+ * will be dealt is kept as a {@code byte[]} of codes. Shuffling, dealing, removing and resetting
+ * never allocate, so a single deck can be reused for as many deals as a simulation needs.
+ * <p>
+ * A deck is not thread-safe; give each thread its own.
+ *
+ * @author Spyros Dellas
+ */
+public class Deck {
+
+    private static final long FULL = (1L << Card.COUNT) - 1;
+
+    private final byte[] order = new byte[Card.COUNT];
+    private int top;        // the position of the next card to deal; order[top..COUNT) is the deck
+    private long cards;     // the bitmask of the cards in the deck
+
+    /**
+     * Creates a full deck in the order of {@link Card#newDeckIterative()}.
+     */
+    public Deck() {
+        for (int i = 0; i < order.length; i++)
+            order[i] = (byte) i;
+        reset();
+    }
+
+    /**
+     * Puts all the dealt and removed cards back into this deck. The order of the cards is
+     * unspecified until the deck is shuffled.
+     */
+    public void reset() {
+        top = 0;
+        cards = FULL;
+    }
+
+    /**
+     * Shuffles the cards in this deck, with the Fisher-Yates algorithm.
+     *
+     * @param random the source of randomness
+     */
+    public void shuffle(SplittableRandom random) {
+        for (int i = order.length - 1; i > top; i--) {
+            int j = top + random.nextInt(i - top + 1);
+            byte tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+    }
+
+    public int size() {
+        return order.length - top;
+    }
+
+    public boolean isEmpty() {
+        return top == order.length;
+    }
+
+    /**
+     * Deals the top card of this deck.
+     *
+     * @return the code of the card
+     * @throws IllegalStateException if the deck is empty
+     */
+    public byte dealCode() {
+        if (top == order.length)
+            throw new IllegalStateException("Empty deck");
+        byte code = order[top++];
+        cards &= ~(1L << code);
+        return code;
+    }
+
+    /**
+     * Deals the top card of this deck.
+     *
+     * @return the card
+     * @throws IllegalStateException if the deck is empty
+     */
+    public Card deal() {
+        return Card.of(dealCode());
+    }
+
+    /**
+     * Deals the given number of cards from the top of this deck into an array.
+     *
+     * @param codes  the array that receives the codes of the cards
+     * @param offset the position in the array of the first card
+     * @param count  the number of cards to deal
+     * @throws IllegalStateException     if the deck has fewer cards
+     * @throws IndexOutOfBoundsException if the cards don't fit in the array
+     */
+    public void deal(byte[] codes, int offset, int count) {
+        Objects.checkFromIndexSize(offset, count, codes.length);
+        if (count > size())
+            throw new IllegalStateException("Can't deal " + count + " cards from a deck of " + size());
+        for (int i = 0; i < count; i++) {
+            byte code = order[top++];
+            cards &= ~(1L << code);
+            codes[offset + i] = code;
+        }
+    }
+
+    /**
+     * Deals the given number of cards at random from this deck into an array.
+     * <p>
+     * This is a partial Fisher-Yates shuffle: it costs one random number per card dealt rather
+     * than one per card in the deck, which makes it the method of choice for simulations that deal
+     * only a few cards per trial.
+     *
+     * @param codes  the array that receives the codes of the cards
+     * @param offset the position in the array of the first card
+     * @param count  the number of cards to deal
+     * @param random the source of randomness
+     * @throws IllegalStateException     if the deck has fewer cards
+     * @throws IndexOutOfBoundsException if the cards don't fit in the array
+     */
+    public void deal(byte[] codes, int offset, int count, SplittableRandom random) {
+        Objects.checkFromIndexSize(offset, count, codes.length);
+        if (count > size())
+            throw new IllegalStateException("Can't deal " + count + " cards from a deck of " + size());
+        for (int i = 0; i < count; i++) {
+            int j = top + random.nextInt(order.length - top);
+            byte code = order[j];
+            order[j] = order[top];
+            order[top++] = code;
+            cards &= ~(1L << code);
+            codes[offset + i] = code;
+        }
+    }
+
+    /**
+     * Puts the given number of the most recently dealt or removed cards back on top of this deck.
+     *
+     * @param count the number of cards to put back
+     * @throws IllegalArgumentException if count is negative or greater than the number of cards
+     *                                  dealt or removed since the last reset
+     */
+    public void undeal(int count) {
+        if (count < 0 || count > top)
+            throw new IllegalArgumentException("Can't put back " + count + " cards; " + top + " are out of the deck");
+        for (int i = 0; i < count; i++)
+            cards |= 1L << order[--top];
+    }
+
+    /**
+     * Removes the given card from this deck, if it's in the deck. The card at the top of the deck
+     * takes the place of the removed card.
+     *
+     * @param code the code of the card
+     * @return true if the card was in the deck
+     * @throws IndexOutOfBoundsException if code is not between 0 and 51
+     */
+    public boolean remove(int code) {
+        if (!contains(code))
+            return false;
+        // Swap the card to the top of the deck, and then deal it
+        for (int i = top; ; i++) {
+            if (order[i] == code) {
+                order[i] = order[top];
+                order[top++] = (byte) code;
+                cards &= ~(1L << code);
+                return true;
+            }
+        }
+    }
+
+    public boolean remove(Card card) {
+        return remove(card.code());
+    }
+
+    /**
+     * Returns true if the given card is still in this deck.
+     *
+     * @param code the code of the card
+     * @return true if the card is in the deck
+     * @throws IndexOutOfBoundsException if code is not between 0 and 51
+     */
+    public boolean contains(int code) {
+        return (cards & (1L << Objects.checkIndex(code, Card.COUNT))) != 0;
+    }
+
+    public boolean contains(Card card) {
+        return contains(card.code());
+    }
+
+    /**
+     * Returns the cards in this deck as a bitmask, with bit i set if the card with code i is in
+     * the deck.
+     *
+     * @return the bitmask of the cards in the deck
+     */
+    public long mask() {
+        return cards;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = top; i < order.length; i++) {
+            if (i > top)
+                sb.append(", ");
+            sb.append(Card.of(order[i]));
+        }
+        return sb.append(']').toString();
+    }
+
+    public static void main(String[] args) {
+        SplittableRandom random = new SplittableRandom(52);
+        Deck deck = new Deck();
+        deck.shuffle(random);
+        System.out.println(deck.deal() + " " + deck.deal() + ", " + deck.size() + " left");
+        deck.remove(Card.of(Card.Suit.SPADES, Card.Rank.ACE));
+        System.out.println("contains ace of spades: " + deck.contains(Card.of(Card.Suit.SPADES, Card.Rank.ACE)));
+
+        // A million deals of a 5-card hand from a single reused deck
+        byte[] hand = new byte[5];
+        int[] seen = new int[Card.COUNT];
+        long start = System.nanoTime();
+        for (int i = 0; i < 1_000_000; i++) {
+            deck.reset();
+            deck.shuffle(random);
+            deck.deal(hand, 0, hand.length);
+            for (byte code : hand)
+                seen[code]++;
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("1000000 deals in %.1f ms; ace of spades dealt %d times (expected ~%d)%n",
+                elapsed / 1e6, seen[Card.of(Card.Suit.SPADES, Card.Rank.ACE).code()], 5_000_000 / Card.COUNT);
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@code List<Double>} that also exposes its elements as primitive {@code double} values.
+ * <p>
+ * Every method of the {@code List} interface necessarily boxes and unboxes its elements.
+ * The primitive methods declared here give clients a boxing-free path to the same elements,
+ * while the list remains usable anywhere a {@code List<Double>} is expected.
+ * <p>
+ * Note:
+ * The {@code iterator} and {@code spliterator} methods are overridden with covariant return
+ * types, so a client holding a {@code DoubleList} gets the primitive specializations for free.
+ *
+ * @author Spyros Dellas
+ */
+public interface DoubleList extends List<Double> {
+
+    /**
+     * Returns the element at the specified position in this list, without boxing.
+     *
+     * @param index index of the element to return
+     * @return the element at the specified position in this list
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    double getDouble(int index);
+
+    /**
+     * Replaces the element at the specified position in this list, without boxing.
+     *
+     * @param index index of the element to replace
+     * @param value the element to be stored at the specified position
+     * @return the element previously at the specified position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    double setDouble(int index, double value);
+
+    /**
+     * Returns the index of the first occurrence of the specified value in this list,
+     * or -1 if this list does not contain it.
+     * <p>
+     * Values are compared as by {@link Double#equals(Object)}, to agree with {@code indexOf}:
+     * {@code NaN} matches {@code NaN}, but {@code 0.0} does not match {@code -0.0}.
+     *
+     * @param value the value to search for
+     * @return the index of the first occurrence, or -1
+     */
+    int indexOfDouble(double value);
+
+    /**
+     * Returns true if this list contains the specified value.
+     *
+     * @param value the value to search for
+     * @return true if this list contains the specified value
+     */
+    default boolean containsDouble(double value) {
+        return indexOfDouble(value) >= 0;
+    }
+
+    /**
+     * Replaces each element of this list with the result of applying the operator to that
+     * element, without boxing.
+     *
+     * @param operator the operator to apply to each element
+     * @throws NullPointerException if the operator is null
+     */
+    void replaceAllDoubles(DoubleUnaryOperator operator);
+
+    /**
+     * Returns a new {@code double} array containing all of the elements in this list in proper sequence.
+     *
+     * @return an array containing all of the elements in this list
+     */
+    double[] toDoubleArray();
+
+    @Override
+    PrimitiveIterator.OfDouble iterator();
+
+    @Override
+    Spliterator.OfDouble spliterator();
+
+    /**
+     * Returns a sequential {@code DoubleStream} with this list as its source.
+     *
+     * @return a sequential {@code DoubleStream} over the elements in this list
+     */
+    default DoubleStream doubleStream() {
+        return StreamSupport.doubleStream(spliterator(), false);
+    }
+
+    /**
+     * Returns a possibly parallel {@code DoubleStream} with this list as its source.
+     *
+     * @return a possibly parallel {@code DoubleStream} over the elements in this list
+     */
+    default DoubleStream parallelDoubleStream() {
+        return StreamSupport.doubleStream(spliterator(), true);
+    }
+}
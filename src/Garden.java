@@ -1,24 +1,142 @@
 import java.util.*;
 
-import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toCollection;
 
 /**
  * Demo class that demonstrates usage of {@code ENumMap} combined with streams.
+ * <p>
+ * Besides the two methods that build the categorization from scratch, the garden keeps an
+ * incrementally maintained index that answers the same query without scanning the garden.
  *
  * @author Spyros Dellas
  */
 public class Garden {
 
-    private final Plant[] garden;
+    private final Set<Plant> garden = new LinkedHashSet<>();
+
+    /*
+     * The plants of each life cycle, maintained incrementally by the mutators.
+     *
+     * The sets are persistent: a mutation replaces the set of a life cycle by an updated copy
+     * that shares all but one path of the trie with the old one, which costs O(1) for a trie at
+     * most 7 levels deep. Since a set never changes, queries hand out the current sets
+     * themselves as snapshots, in O(1), and later mutations can't touch them.
+     */
+    private final Map<Plant.LifeCycle, PersistentHashSet<Plant>> index = new EnumMap<>(Plant.LifeCycle.class);
+    private Map<Plant.LifeCycle, Set<Plant>> indexSnapshot;
+    private long version = 0;
 
     public Garden() {
-        garden = new Plant[5];
-        garden[0] = new Plant("Daffodil", Plant.LifeCycle.ANNUAL);
-        garden[1] = new Plant("Petunia", Plant.LifeCycle.ANNUAL);
-        garden[2] = new Plant("Grass", Plant.LifeCycle.PERENNIAL);
-        garden[3] = new Plant("Poppies", Plant.LifeCycle.ANNUAL);
-        garden[4] = new Plant("Brussels Sprouts", Plant.LifeCycle.BIENNIAL);
+        for (Plant.LifeCycle lc : Plant.LifeCycle.values())
+            index.put(lc, PersistentHashSet.of());
+        insert(new Plant("Daffodil", Plant.LifeCycle.ANNUAL));
+        insert(new Plant("Petunia", Plant.LifeCycle.ANNUAL));
+        insert(new Plant("Grass", Plant.LifeCycle.PERENNIAL));
+        insert(new Plant("Poppies", Plant.LifeCycle.ANNUAL));
+        insert(new Plant("Brussels Sprouts", Plant.LifeCycle.BIENNIAL));
+    }
+
+    /**
+     * Adds a plant to the garden.
+     *
+     * @param plant the plant to add
+     * @return true if the garden did not already contain the plant
+     * @throws NullPointerException if plant is null
+     */
+    public boolean addPlant(Plant plant) {
+        return insert(plant);
+    }
+
+    // The constructor must not invoke the overridable addPlant, see Effective Java Item 19
+    private boolean insert(Plant plant) {
+        Objects.requireNonNull(plant);
+        if (!garden.add(plant))
+            return false;
+        index.put(plant.lifeCycle, index.get(plant.lifeCycle).with(plant));
+        invalidate();
+        return true;
+    }
+
+    /**
+     * Removes a plant from the garden.
+     *
+     * @param plant the plant to remove
+     * @return true if the garden contained the plant
+     */
+    public boolean removePlant(Plant plant) {
+        if (!garden.remove(plant))
+            return false;
+        index.put(plant.lifeCycle, index.get(plant.lifeCycle).without(plant));
+        invalidate();
+        return true;
+    }
+
+    /**
+     * Changes the life cycle of a plant in the garden.
+     * <p>
+     * Plants are immutable, so the plant is replaced by a new plant of the same name.
+     *
+     * @param plant     the plant to change
+     * @param lifeCycle the new life cycle
+     * @return the plant that replaced the given plant in the garden
+     * @throws IllegalArgumentException if the garden doesn't contain the plant
+     * @throws NullPointerException     if lifeCycle is null
+     */
+    public Plant changeLifeCycle(Plant plant, Plant.LifeCycle lifeCycle) {
+        Objects.requireNonNull(lifeCycle);
+        if (!garden.contains(plant))
+            throw new IllegalArgumentException("Not in the garden: " + plant);
+        Plant replacement = new Plant(plant.name, lifeCycle);
+        removePlant(plant);
+        insert(replacement);
+        return replacement;
+    }
+
+    private void invalidate() {
+        indexSnapshot = null;
+        version++;
+    }
+
+    /**
+     * Returns the version of the garden, which changes whenever a plant is added, removed or changed.
+     * <p>
+     * Callers that derive data from the garden can cache it together with the version, and
+     * recompute it only when the version has moved on.
+     *
+     * @return the current version
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns the plants with the given life cycle, in O(1).
+     *
+     * @param lifeCycle the life cycle
+     * @return an immutable snapshot of the plants with the given life cycle
+     */
+    public Set<Plant> plantsWith(Plant.LifeCycle lifeCycle) {
+        return index.get(lifeCycle);
+    }
+
+    /**
+     * Returns the plants in the garden categorized by their lifecycle, from the incrementally
+     * maintained index.
+     * <p>
+     * The first call after a mutation builds a new map over the snapshots of {@link #plantsWith},
+     * which takes one entry per life cycle and copies no plants; later calls return the same map
+     * until the next mutation.
+     *
+     * @return an immutable snapshot of the plants in the garden, categorized by their lifecycle
+     */
+    public Map<Plant.LifeCycle, Set<Plant>> lifeCycleIndex() {
+        if (indexSnapshot == null) {
+            Map<Plant.LifeCycle, Set<Plant>> map = new EnumMap<>(Plant.LifeCycle.class);
+            for (Plant.LifeCycle lc : Plant.LifeCycle.values())
+                map.put(lc, plantsWith(lc));
+            indexSnapshot = Collections.unmodifiableMap(map);
+        }
+        return indexSnapshot;
     }
 
     /**
@@ -38,13 +156,16 @@ public class Garden {
     }
 
     /**
-     * Demonstrates usage of EnumMap using a stream and a predefined Collector.
+     * Demonstrates usage of EnumMap using a stream and a Collector.
+     * <p>
+     * {@link EnumCollectors#groupingByEnum} groups into an array indexed by ordinal, and only
+     * builds the {@code EnumMap} once all the plants have been collected.
      *
      * @return the plants in the garden, categorized by their lifecycle
      */
     public Map<Plant.LifeCycle, Set<Plant>> listByLifeCycleStreamCollector() {
-        return Arrays.stream(garden)
-                .collect(groupingBy(p -> p.lifeCycle, () -> new EnumMap<>(Plant.LifeCycle.class), toCollection(HashSet::new)));
+        return garden.stream()
+                .collect(EnumCollectors.groupingByEnum(Plant.LifeCycle.class, p -> p.lifeCycle, toCollection(HashSet::new)));
     }
 
     public static void main(String[] args) {
@@ -54,6 +175,14 @@ public class Garden {
         System.out.println();
         System.out.println("The plants in the garden categorized by LifeCycle (using a stream):\n" +
                 garden.listByLifeCycleStreamCollector());
+        System.out.println();
+
+        Map<Plant.LifeCycle, Set<Plant>> before = garden.lifeCycleIndex();
+        long version = garden.version();
+        Plant grass = garden.plantsWith(Plant.LifeCycle.PERENNIAL).iterator().next();
+        garden.changeLifeCycle(grass, Plant.LifeCycle.ANNUAL);
+        System.out.println("The index at version " + version + ":\n" + before);
+        System.out.println("The index at version " + garden.version() + ":\n" + garden.lifeCycleIndex());
     }
 
 }
@@ -1,6 +1,7 @@
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Decorator (wrapper) class demonstrating usage of composition in place of inheritance.
@@ -18,33 +19,163 @@ import java.util.Set;
  * NOTE:
  * <p>The implementation is broken into two pieces, the class itself and a reusable forwarding
  * class, which contains all of the forwarding methods and nothing else.
+ * <p>
+ * The counters are {@code LongAdder}s, which stripe their updates across cells so that
+ * concurrent increments neither get lost nor contend on a single memory location. The wrapped
+ * set must of course itself be safe for concurrent use if the instrumented set is shared.
+ * <p>
+ * Optionally, one in every N operations is timed and its latency recorded in a
+ * {@link LatencyHistogram}. Operations that aren't sampled pay only for a counter increment and
+ * a thread-local random number.
+ * <p>
+ * An instrumented set is {@link Metered}, so it can be published process-wide through a
+ * {@link MetricsRegistry} and watched without holding a reference to it.
  *
  * @author Spyros Dellas
  */
-public class InstrumentedSet<E> extends ForwardingSet<E> {
+public class InstrumentedSet<E> extends ForwardingSet<E> implements Metered {
 
-    private int addCount = 0;  // counts the elements added since the set was created
+    private final LongAdder addCount = new LongAdder();        // the elements we attempted to add
+    private final LongAdder removeCount = new LongAdder();     // the elements we attempted to remove
+    private final LongAdder containsHits = new LongAdder();
+    private final LongAdder containsMisses = new LongAdder();
+
+    private final int samplingInterval;  // time one in every samplingInterval operations; 0 means never
+    private final LatencyHistogram latencies = new LatencyHistogram();
 
     public InstrumentedSet(Set<E> s) {
+        this(s, 0);
+    }
+
+    /**
+     * Creates an instrumented set that also records the latency of one in every
+     * {@code samplingInterval} operations.
+     *
+     * @param s                the set to instrument
+     * @param samplingInterval the sampling interval, or 0 to disable latency sampling
+     * @throws IllegalArgumentException if samplingInterval is negative
+     */
+    public InstrumentedSet(Set<E> s, int samplingInterval) {
         super(s);
+        if (samplingInterval < 0)
+            throw new IllegalArgumentException("Negative sampling interval: " + samplingInterval);
+        this.samplingInterval = samplingInterval;
+    }
+
+    private boolean sampled() {
+        return samplingInterval != 0 && ThreadLocalRandom.current().nextInt(samplingInterval) == 0;
     }
 
     @Override
     public boolean add(E e) {
-        addCount++;
-        return super.add(e);
+        addCount.increment();
+        if (!sampled())
+            return super.add(e);
+        long start = System.nanoTime();
+        boolean result = super.add(e);
+        latencies.record(System.nanoTime() - start);
+        return result;
     }
 
+    /*
+     * ForwardingSet.addAll forwards straight to the wrapped set, so it never calls our add method.
+     * This is what makes composition robust, but it also means we have to count the elements here.
+     */
     @Override
     public boolean addAll(Collection<? extends E> c) {
-        return super.addAll(c);
+        addCount.add(c.size());
+        if (!sampled())
+            return super.addAll(c);
+        long start = System.nanoTime();
+        boolean result = super.addAll(c);
+        latencies.record(System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        removeCount.increment();
+        if (!sampled())
+            return super.remove(o);
+        long start = System.nanoTime();
+        boolean result = super.remove(o);
+        latencies.record(System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        boolean result;
+        if (!sampled()) {
+            result = super.contains(o);
+        } else {
+            long start = System.nanoTime();
+            result = super.contains(o);
+            latencies.record(System.nanoTime() - start);
+        }
+        (result ? containsHits : containsMisses).increment();
+        return result;
+    }
+
+    public long getAddCount() {
+        return addCount.sum();
+    }
+
+    public long getRemoveCount() {
+        return removeCount.sum();
     }
 
-    public int getAddCount() {
-        return addCount;
+    public long getContainsHitCount() {
+        return containsHits.sum();
     }
 
-    public static void main(String[] args) {
+    public long getContainsMissCount() {
+        return containsMisses.sum();
+    }
+
+    /**
+     * Returns the histogram of the sampled operation latencies. The histogram is empty if
+     * sampling is disabled.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Registers this set in the default {@link MetricsRegistry} under the given name.
+     *
+     * @param name the name to register this set under
+     * @return this set
+     * @throws IllegalArgumentException if the name is already registered
+     */
+    public InstrumentedSet<E> registerAs(String name) {
+        MetricsRegistry.getDefault().register(name, this);
+        return this;
+    }
+
+    @Override
+    public Map<String, Long> counters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("adds", getAddCount());
+        counters.put("removes", getRemoveCount());
+        counters.put("containsHits", getContainsHitCount());
+        counters.put("containsMisses", getContainsMissCount());
+        return counters;
+    }
+
+    @Override
+    public Map<String, Number> gauges() {
+        Map<String, Number> gauges = new LinkedHashMap<>();
+        gauges.put("size", size());
+        gauges.put("sampledOperations", latencies.count());
+        gauges.put("meanLatencyNanos", latencies.mean());
+        gauges.put("p99LatencyNanos", latencies.percentile(99));
+        return gauges;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
         InstrumentedSet<Plant> plants = new InstrumentedSet<>(new HashSet<>());
         plants.add(new Plant("Carrot", Plant.LifeCycle.BIENNIAL));
         System.out.println("plants: " + plants);
@@ -56,8 +187,36 @@ public class InstrumentedSet<E> extends ForwardingSet<E> {
         phases.add(Phase.LIQUID);
         InstrumentedSet<Phase> iPhases = new InstrumentedSet<>(phases);
         iPhases.add(Phase.GAS);
+        iPhases.addAll(Set.of(Phase.SOLID, Phase.LIQUID));
         System.out.println("iPhases: " + iPhases);
         System.out.println("addCount = " + iPhases.getAddCount());
+
+        // Concurrent use: no increments are lost, and one in 64 operations is timed
+        InstrumentedSet<Integer> numbers = new InstrumentedSet<>(ConcurrentHashMap.newKeySet(), 64);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    numbers.add(i);
+                    numbers.contains(i + 50_000);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        System.out.println("addCount = " + numbers.getAddCount()
+                + ", contains hits = " + numbers.getContainsHitCount()
+                + ", misses = " + numbers.getContainsMissCount());
+        System.out.println("sampled latencies: " + numbers.getLatencies());
+
+        // Publish the set; it is now visible in JConsole under effectivejava:type=Metered
+        numbers.registerAs("numbers");
+        // The rates only count the events since registration, here these 1000 adds
+        for (int i = 0; i < 1_000; i++)
+            numbers.add(-i);
+        System.out.println("snapshot: " + MetricsRegistry.getDefault().snapshot());
+        MetricsRegistry.getDefault().unregister("numbers");
     }
 
 }
@@ -0,0 +1,219 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * This class contains static search and aggregation kernels over ranges of an {@code int} array.
+ * <p>
+ * The kernels back the bulk operations of {@link Lists#intArrayAsList(int[])}, so that clients
+ * can search and aggregate the backing array instead of looping over boxed {@code Integer}s.
+ * <p>
+ * Note:
+ * The search and aggregation loops are deliberately written in the shape that the HotSpot C2
+ * compiler's superword pass turns into SIMD instructions: counted loops over a single array, no
+ * early exits and no calls inside the loop body. Where a kernel has to exit early, as
+ * {@code indexOf} does, it scans fixed-size blocks with a branch-free inner loop and only exits
+ * between blocks. {@code filter} is the exception, and is not vectorized; see its documentation.
+ * The {@code IntKernelsBenchmark} in the benchmarks module measures every kernel against a loop
+ * over boxed {@code Integer}s.
+ * We don't use the {@code jdk.incubator.vector} API: it is still incubating and needs
+ * {@code --add-modules} at both compile and run time, which this project can't assume.
+ *
+ * @author Spyros Dellas
+ */
+public final class IntKernels {
+
+    // Block size of the blocked search; a multiple of every current SIMD register width in ints
+    private static final int BLOCK = 64;
+
+    /**
+     * Do not instantiate.
+     */
+    private IntKernels() {
+    }
+
+    /**
+     * Returns the index of the first occurrence of value in {@code a[from, to)}, or -1.
+     *
+     * @param a     the array to search
+     * @param from  the index of the first element, inclusive
+     * @param to    the index of the last element, exclusive
+     * @param value the value to search for
+     * @return the index of the first occurrence of value, or -1 if there is none
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public static int indexOf(int[] a, int from, int to, int value) {
+        Objects.checkFromToIndex(from, to, a.length);
+        int i = from;
+        for (int bound = to - BLOCK; i <= bound; i += BLOCK) {
+            // branch-free count of the matches in this block, then locate only if there is one
+            int hits = 0;
+            for (int j = i; j < i + BLOCK; j++)
+                hits += (a[j] == value) ? 1 : 0;
+            if (hits != 0)
+                break;
+        }
+        for (; i < to; i++)
+            if (a[i] == value)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Returns the number of occurrences of value in {@code a[from, to)}.
+     *
+     * @param a     the array to search
+     * @param from  the index of the first element, inclusive
+     * @param to    the index of the last element, exclusive
+     * @param value the value to count
+     * @return the number of occurrences of value
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public static int count(int[] a, int from, int to, int value) {
+        Objects.checkFromToIndex(from, to, a.length);
+        int count = 0;
+        for (int i = from; i < to; i++)
+            count += (a[i] == value) ? 1 : 0;
+        return count;
+    }
+
+    /**
+     * Returns the sum of {@code a[from, to)}.
+     * <p>
+     * The sum is accumulated in a {@code long}, so it can't overflow for any range of an int array.
+     *
+     * @param a    the array to sum
+     * @param from the index of the first element, inclusive
+     * @param to   the index of the last element, exclusive
+     * @return the sum of the elements in the range
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public static long sum(int[] a, int from, int to) {
+        Objects.checkFromToIndex(from, to, a.length);
+        long sum = 0;
+        for (int i = from; i < to; i++)
+            sum += a[i];
+        return sum;
+    }
+
+    /**
+     * Returns the minimum of {@code a[from, to)}.
+     *
+     * @param a    the array to search
+     * @param from the index of the first element, inclusive
+     * @param to   the index of the last element, exclusive
+     * @return the minimum element in the range
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     * @throws NoSuchElementException    if the range is empty
+     */
+    public static int min(int[] a, int from, int to) {
+        Objects.checkFromToIndex(from, to, a.length);
+        if (from == to)
+            throw new NoSuchElementException();
+        int min = Integer.MAX_VALUE;
+        for (int i = from; i < to; i++)
+            min = Math.min(min, a[i]);
+        return min;
+    }
+
+    /**
+     * Returns the maximum of {@code a[from, to)}.
+     *
+     * @param a    the array to search
+     * @param from the index of the first element, inclusive
+     * @param to   the index of the last element, exclusive
+     * @return the maximum element in the range
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     * @throws NoSuchElementException    if the range is empty
+     */
+    public static int max(int[] a, int from, int to) {
+        Objects.checkFromToIndex(from, to, a.length);
+        if (from == to)
+            throw new NoSuchElementException();
+        int max = Integer.MIN_VALUE;
+        for (int i = from; i < to; i++)
+            max = Math.max(max, a[i]);
+        return max;
+    }
+
+    /**
+     * Returns a new array containing, in order, the elements of {@code a[from, to)} that satisfy
+     * the given predicate.
+     * <p>
+     * The elements are compacted into a scratch array sized for the worst case, with an
+     * unconditional store and a conditional increment of the output index, so the loop has no
+     * data-dependent branches, and an unpredictable predicate costs no branch mispredictions.
+     * The loop is not vectorized, though. {@code predicate.test} is an interface call that is
+     * shared by every caller, so it is megamorphic in any real program and can't be inlined.
+     * And even with an inlined predicate, each store depends on the index computed by the
+     * previous iteration, which the superword pass can't turn into SIMD instructions.
+     *
+     * @param a         the array to filter
+     * @param from      the index of the first element, inclusive
+     * @param to        the index of the last element, exclusive
+     * @param predicate the predicate the elements must satisfy
+     * @return a new array holding the matching elements
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     * @throws NullPointerException      if the predicate is null
+     */
+    public static int[] filter(int[] a, int from, int to, IntPredicate predicate) {
+        Objects.checkFromToIndex(from, to, a.length);
+        Objects.requireNonNull(predicate);
+        int[] result = new int[to - from];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            int value = a[i];
+            result[n] = value;
+            n += predicate.test(value) ? 1 : 0;
+        }
+        return (n == result.length) ? result : Arrays.copyOf(result, n);
+    }
+
+    /*
+     * Boxed reference implementations, used by the test client below for comparison.
+     */
+    private static long boxedSum(List<Integer> list) {
+        long sum = 0;
+        for (Integer value : list)
+            sum += value;
+        return sum;
+    }
+
+    private static int boxedCount(List<Integer> list, int value) {
+        int count = 0;
+        for (Integer element : list)
+            if (element == value)
+                count++;
+        return count;
+    }
+
+    /**
+     * Test client; a rough comparison of the kernels against the boxed {@code List} path.
+     * <p>
+     * This is not a rigorous benchmark; it merely shows the order of magnitude of the
+     * difference once both paths have been warmed up.
+     */
+    public static void main(String[] args) {
+        int[] a = new int[1 << 22];
+        for (int i = 0; i < a.length; i++)
+            a[i] = (i * 31) % 1000;
+        IntList primitive = Lists.intArrayAsList(a);
+        List<Integer> boxed = new ArrayList<>(primitive);
+
+        long check = 0;
+        for (int round = 0; round < 5; round++) {
+            long t0 = System.nanoTime();
+            check += boxedSum(boxed) + boxedCount(boxed, 7) + boxed.indexOf(999);
+            long t1 = System.nanoTime();
+            check += primitive.sumInts() + primitive.countInt(7) + primitive.indexOfInt(999);
+            long t2 = System.nanoTime();
+            System.out.printf("round %d: boxed %6.2f ms, kernels %6.2f ms%n",
+                    round, (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+        }
+        System.out.println("min = " + primitive.minInt() + ", max = " + primitive.maxInt()
+                + ", evens = " + primitive.filterInts(x -> (x & 1) == 0).length + " (" + check + ")");
+    }
+}
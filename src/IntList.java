@@ -0,0 +1,153 @@
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@code List<Integer>} that also exposes its elements as primitive {@code int} values.
+ * <p>
+ * Every method of the {@code List} interface necessarily boxes and unboxes its elements.
+ * The primitive methods declared here give clients a boxing-free path to the same elements,
+ * while the list remains usable anywhere a {@code List<Integer>} is expected.
+ * <p>
+ * Note:
+ * The {@code iterator} and {@code spliterator} methods are overridden with covariant return
+ * types, so a client holding an {@code IntList} gets the primitive specializations for free.
+ *
+ * @author Spyros Dellas
+ */
+public interface IntList extends List<Integer> {
+
+    /**
+     * Returns the element at the specified position in this list, without boxing.
+     *
+     * @param index index of the element to return
+     * @return the element at the specified position in this list
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    int getInt(int index);
+
+    /**
+     * Replaces the element at the specified position in this list, without boxing.
+     *
+     * @param index index of the element to replace
+     * @param value the element to be stored at the specified position
+     * @return the element previously at the specified position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    int setInt(int index, int value);
+
+    /**
+     * Returns the index of the first occurrence of the specified value in this list,
+     * or -1 if this list does not contain it.
+     *
+     * @param value the value to search for
+     * @return the index of the first occurrence, or -1
+     */
+    int indexOfInt(int value);
+
+    /**
+     * Returns true if this list contains the specified value.
+     *
+     * @param value the value to search for
+     * @return true if this list contains the specified value
+     */
+    default boolean containsInt(int value) {
+        return indexOfInt(value) >= 0;
+    }
+
+    /**
+     * Returns the number of occurrences of the specified value in this list.
+     *
+     * @param value the value to count
+     * @return the number of occurrences of the value
+     */
+    default int countInt(int value) {
+        return (int) intStream().filter(x -> x == value).count();
+    }
+
+    /**
+     * Returns the sum of the elements in this list, accumulated in a {@code long}.
+     *
+     * @return the sum of the elements in this list
+     */
+    default long sumInts() {
+        return intStream().asLongStream().sum();
+    }
+
+    /**
+     * Returns the minimum element in this list.
+     *
+     * @return the minimum element in this list
+     * @throws NoSuchElementException if this list is empty
+     */
+    default int minInt() {
+        return intStream().min().orElseThrow();
+    }
+
+    /**
+     * Returns the maximum element in this list.
+     *
+     * @return the maximum element in this list
+     * @throws NoSuchElementException if this list is empty
+     */
+    default int maxInt() {
+        return intStream().max().orElseThrow();
+    }
+
+    /**
+     * Returns a new array containing, in order, the elements of this list that satisfy the
+     * given predicate.
+     *
+     * @param predicate the predicate the elements must satisfy
+     * @return a new array holding the matching elements
+     * @throws NullPointerException if the predicate is null
+     */
+    default int[] filterInts(IntPredicate predicate) {
+        return intStream().filter(predicate).toArray();
+    }
+
+    /**
+     * Replaces each element of this list with the result of applying the operator to that
+     * element, without boxing.
+     *
+     * @param operator the operator to apply to each element
+     * @throws NullPointerException if the operator is null
+     */
+    void replaceAllInts(IntUnaryOperator operator);
+
+    /**
+     * Returns a new {@code int} array containing all of the elements in this list in proper sequence.
+     *
+     * @return an array containing all of the elements in this list
+     */
+    int[] toIntArray();
+
+    @Override
+    PrimitiveIterator.OfInt iterator();
+
+    @Override
+    Spliterator.OfInt spliterator();
+
+    /**
+     * Returns a sequential {@code IntStream} with this list as its source.
+     *
+     * @return a sequential {@code IntStream} over the elements in this list
+     */
+    default IntStream intStream() {
+        return StreamSupport.intStream(spliterator(), false);
+    }
+
+    /**
+     * Returns a possibly parallel {@code IntStream} with this list as its source.
+     *
+     * @return a possibly parallel {@code IntStream} over the elements in this list
+     */
+    default IntStream parallelIntStream() {
+        return StreamSupport.intStream(spliterator(), true);
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of latencies, recorded in nanoseconds.
+ * <p>
+ * The bucket layout follows the one used by HdrHistogram: every power of two is split into
+ * 2^SUB_BUCKET_BITS linear sub-buckets, so any recorded value is reported with a relative error
+ * of at most 1 / 2^SUB_BUCKET_BITS (about 3%), while the whole {@code long} range fits in under
+ * two thousand buckets. Recording a value costs a leading-zeros count, a shift and one atomic
+ * increment; there is no allocation and no locking.
+ *
+ * @author Spyros Dellas
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+
+    /*
+     * Values below SUB_BUCKETS get a bucket each. Any larger value is reduced to its
+     * SUB_BUCKET_BITS + 1 most significant bits; the position of the leading bit selects the
+     * row of buckets and the remaining bits select the sub-bucket within that row.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    // Returns the largest value that is recorded in the given bucket
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a single latency. Negative values, which a non-monotonic clock could produce,
+     * are recorded as zero.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(value));
+        totalCount.increment();
+        totalValue.add(value);
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     *
+     * @return the number of recorded latencies
+     */
+    public long count() {
+        return totalCount.sum();
+    }
+
+    /**
+     * Returns the mean of the recorded latencies, or 0 if nothing has been recorded.
+     *
+     * @return the mean latency in nanoseconds
+     */
+    public double mean() {
+        long count = totalCount.sum();
+        return (count == 0) ? 0 : (double) totalValue.sum() / count;
+    }
+
+    /**
+     * Returns the latency at the given percentile, or 0 if nothing has been recorded.
+     * <p>
+     * The result is the highest value that falls in the same bucket as the exact percentile, so it
+     * never underestimates the true latency by more than the precision of the histogram.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency at the given percentile in nanoseconds
+     * @throws IllegalArgumentException if the percentile is out of range
+     */
+    public long percentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100))
+            throw new IllegalArgumentException("Percentile out of range: " + percentile);
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            total += counts.get(i);
+        if (total == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target)
+                return highestValueOf(i);
+        }
+        return highestValueOf(BUCKETS - 1);
+    }
+
+    /**
+     * Discards all recorded latencies.
+     * <p>
+     * Latencies recorded concurrently with a reset may or may not be discarded.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        totalCount.reset();
+        totalValue.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.1fns, p50=%dns, p99=%dns, p99.9=%dns",
+                count(), mean(), percentile(50), percentile(99), percentile(99.9));
+    }
+}
@@ -1,11 +1,21 @@
-import java.util.AbstractList;
-import java.util.List;
-import java.util.Objects;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.*;
 
 /**
  * An example class containing static a factory method that returns
  * a fully functional {@code List} implementation atop {@code AbstractList}.
  * <p></p>
+ * Further factories return primitive list views of {@code long} and {@code double} arrays,
+ * and of memory-mapped files holding {@code int} or {@code long} values.
+ * <p></p>
  * The design emulates the {@code Collections} class.
  *
  * @author Spyros Dellas
@@ -35,15 +45,18 @@ public class Lists {
      * as a list of Integer instances. Because of all the translation back and forth
      * between int values and Integer instances (boxing and unboxing), its performance
      * is not terribly good.
+     * <p>
+     * The returned list is therefore an {@link IntList}: clients that know they hold
+     * int values can use its primitive methods and streams and skip the boxing entirely.
      *
      * @param a the specified array
      * @return a fixed-size modifiable list containing the elements in the specified array
      * @throws NullPointerException if a is null
      */
-    public static List<Integer> intArrayAsList(int[] a) {
+    public static IntList intArrayAsList(int[] a) {
         Objects.requireNonNull(a);
 
-        /* The implementation takes the form of an anonymous class that extends AbstractList.
+        /* The original implementation took the form of an anonymous class that extends AbstractList.
          *
          * There are many limitations on the applicability of anonymous classes:
          *
@@ -53,25 +66,849 @@ public class Lists {
          * 3. We can’t declare an anonymous class to implement multiple interfaces or to extend a
          *    class and implement an interface at the same time
          * 4. Clients of an anonymous class can’t invoke any members except those it inherits from its supertype
+         *
+         * Limitations 3 and 4 are exactly what we run into once we want to expose the primitive
+         * IntList methods, so the adapter is now a private static member class instead.
+         */
+        return new IntArrayList(a);
+    }
+
+
+    /**
+     * Returns a fixed-size {@link LongList} view of the specified array.
+     * <p>
+     * This is the {@code long} counterpart of {@link #intArrayAsList(int[])}.
+     *
+     * @param a the specified array
+     * @return a fixed-size modifiable list containing the elements in the specified array
+     * @throws NullPointerException if a is null
+     */
+    public static LongList longArrayAsList(long[] a) {
+        Objects.requireNonNull(a);
+        return new LongArrayList(a);
+    }
+
+    /**
+     * Returns a fixed-size {@link DoubleList} view of the specified array.
+     * <p>
+     * This is the {@code double} counterpart of {@link #intArrayAsList(int[])}.
+     *
+     * @param a the specified array
+     * @return a fixed-size modifiable list containing the elements in the specified array
+     * @throws NullPointerException if a is null
+     */
+    public static DoubleList doubleArrayAsList(double[] a) {
+        Objects.requireNonNull(a);
+        return new DoubleArrayList(a);
+    }
+
+    /**
+     * Returns a fixed-size, read-only {@link IntList} view of the big-endian {@code int} values
+     * stored in the specified file.
+     * <p>
+     * Equivalent to {@code mappedIntList(path, FileChannel.MapMode.READ_ONLY, ByteOrder.BIG_ENDIAN)}.
+     *
+     * @param path the file containing the values
+     * @return a read-only list view of the file
+     * @throws IOException if an IO error occurs
+     */
+    public static IntList mappedIntList(Path path) throws IOException {
+        return mappedIntList(path, FileChannel.MapMode.READ_ONLY, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Returns a fixed-size {@link IntList} view of the {@code int} values stored in the specified
+     * file, backed by a memory-mapped region of the file.
+     * <p>
+     * Nothing is copied onto the heap: the operating system pages the file in as the list is read.
+     * Writes through a {@code READ_WRITE} list go to the file, writes through a {@code PRIVATE}
+     * list go to a private copy of the affected pages, and a {@code READ_ONLY} list throws
+     * {@code UnsupportedOperationException} on any attempt to modify it.
+     * <p>
+     * A single mapping is limited to 2 GB, so larger files are mapped as a sequence of pages.
+     * Trailing bytes that do not form a whole {@code int} are ignored.
+     *
+     * @param path  the file containing the values
+     * @param mode  the mapping mode
+     * @param order the byte order the values were written in
+     * @return a list view of the file
+     * @throws IOException              if an IO error occurs
+     * @throws IllegalArgumentException if the file holds more than {@code Integer.MAX_VALUE} values
+     * @throws NullPointerException     if any argument is null
+     */
+    public static IntList mappedIntList(Path path, FileChannel.MapMode mode, ByteOrder order) throws IOException {
+        ByteBuffer[] bytePages = map(path, mode, Integer.BYTES);
+        IntBuffer[] pages = new IntBuffer[bytePages.length];
+        for (int i = 0; i < pages.length; i++)
+            pages[i] = bytePages[i].order(order).asIntBuffer();
+        return new MappedIntList(pages, mode == FileChannel.MapMode.READ_ONLY);
+    }
+
+    /**
+     * Returns a fixed-size, read-only {@link LongList} view of the big-endian {@code long} values
+     * stored in the specified file.
+     * <p>
+     * Equivalent to {@code mappedLongList(path, FileChannel.MapMode.READ_ONLY, ByteOrder.BIG_ENDIAN)}.
+     *
+     * @param path the file containing the values
+     * @return a read-only list view of the file
+     * @throws IOException if an IO error occurs
+     */
+    public static LongList mappedLongList(Path path) throws IOException {
+        return mappedLongList(path, FileChannel.MapMode.READ_ONLY, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Returns a fixed-size {@link LongList} view of the {@code long} values stored in the specified
+     * file, backed by a memory-mapped region of the file.
+     * <p>
+     * See {@link #mappedIntList(Path, FileChannel.MapMode, ByteOrder)} for the semantics of the
+     * mapping modes and of files larger than 2 GB.
+     *
+     * @param path  the file containing the values
+     * @param mode  the mapping mode
+     * @param order the byte order the values were written in
+     * @return a list view of the file
+     * @throws IOException              if an IO error occurs
+     * @throws IllegalArgumentException if the file holds more than {@code Integer.MAX_VALUE} values
+     * @throws NullPointerException     if any argument is null
+     */
+    public static LongList mappedLongList(Path path, FileChannel.MapMode mode, ByteOrder order) throws IOException {
+        ByteBuffer[] bytePages = map(path, mode, Long.BYTES);
+        LongBuffer[] pages = new LongBuffer[bytePages.length];
+        for (int i = 0; i < pages.length; i++)
+            pages[i] = bytePages[i].order(order).asLongBuffer();
+        return new MappedLongList(pages, mode == FileChannel.MapMode.READ_ONLY);
+    }
+
+    /*
+     * The size of a single mapping, in bytes. A MappedByteBuffer is indexed by an int, so one
+     * mapping can never exceed 2 GB; we use 1 GB pages so that the page holding an element and the
+     * element's position within it can be computed with a shift and a mask.
+     */
+    private static final int PAGE_SHIFT = 30;
+
+    /*
+     * Maps the whole elements contained in the specified file as a sequence of pages.
+     * Every page but the last holds exactly 1 << (PAGE_SHIFT - log2(elementSize)) elements.
+     *
+     * The channel can be closed as soon as the mappings have been created; a mapping remains
+     * valid until the buffer itself is garbage collected.
+     */
+    private static ByteBuffer[] map(Path path, FileChannel.MapMode mode, int elementSize) throws IOException {
+        Objects.requireNonNull(path);
+        Objects.requireNonNull(mode);
+        OpenOption[] options = (mode == FileChannel.MapMode.READ_ONLY)
+                ? new OpenOption[]{StandardOpenOption.READ}
+                : new OpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE};
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            long elements = channel.size() / elementSize;
+            if (elements > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Too many elements for a List: " + elements);
+            long bytes = elements * elementSize;
+            long pageSize = 1L << PAGE_SHIFT;
+            ByteBuffer[] pages = new ByteBuffer[(int) ((bytes + pageSize - 1) >>> PAGE_SHIFT)];
+            for (int i = 0; i < pages.length; i++) {
+                long position = (long) i << PAGE_SHIFT;
+                pages[i] = channel.map(mode, position, Math.min(pageSize, bytes - position));
+            }
+            return pages;
+        }
+    }
+
+    /**
+     * Skeletal implementation of {@code IntList}.
+     * <p>
+     * Subclasses need only implement {@code size}, {@code getInt} and, if they are modifiable,
+     * {@code setInt}; the boxed {@code List} methods and all bulk operations are expressed in
+     * terms of these primitive accessors.
+     */
+    private abstract static class AbstractIntList extends AbstractList<Integer> implements IntList, RandomAccess {
+
+        @Override
+        public Integer get(int index) {
+            return getInt(index);
+        }
+
+        @Override
+        public Integer set(int index, Integer value) {
+            return setInt(index, value);
+        }
+
+        @Override
+        public int setInt(int index, int value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            // only an Integer can be equal to an element; unbox it once instead of boxing every element
+            return (o instanceof Integer) ? indexOfInt((Integer) o) : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            if (!(o instanceof Integer))
+                return -1;
+            int value = (Integer) o;
+            for (int i = size() - 1; i >= 0; i--)
+                if (getInt(i) == value)
+                    return i;
+            return -1;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) >= 0;
+        }
+
+        @Override
+        public int indexOfInt(int value) {
+            int size = size();
+            for (int i = 0; i < size; i++)
+                if (getInt(i) == value)
+                    return i;
+            return -1;
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<Integer> operator) {
+            Objects.requireNonNull(operator);
+            int size = size();
+            for (int i = 0; i < size; i++)
+                setInt(i, operator.apply(getInt(i)));
+        }
+
+        @Override
+        public void replaceAllInts(IntUnaryOperator operator) {
+            Objects.requireNonNull(operator);
+            int size = size();
+            for (int i = 0; i < size; i++)
+                setInt(i, operator.applyAsInt(getInt(i)));
+        }
+
+        /*
+         * A null comparator and the natural order comparator both mean ascending order, which
+         * Arrays.sort can do on a primitive copy of the elements. Any other comparator needs the
+         * boxed values, so we fall back to the default implementation of List.sort.
+         */
+        @Override
+        public void sort(Comparator<? super Integer> c) {
+            if (c == null || c == Comparator.naturalOrder() || c == Comparator.reverseOrder()) {
+                int[] sorted = toIntArray();
+                Arrays.sort(sorted);
+                boolean reversed = (c == Comparator.reverseOrder());
+                for (int i = 0; i < sorted.length; i++)
+                    setInt(i, sorted[reversed ? sorted.length - 1 - i : i]);
+            } else {
+                super.sort(c);
+            }
+        }
+
+        @Override
+        public int[] toIntArray() {
+            int[] result = new int[size()];
+            for (int i = 0; i < result.length; i++)
+                result[i] = getInt(i);
+            return result;
+        }
+
+        @Override
+        public Object[] toArray() {
+            Object[] result = new Object[size()];
+            for (int i = 0; i < result.length; i++)
+                result[i] = getInt(i);
+            return result;
+        }
+
+        @Override
+        public PrimitiveIterator.OfInt iterator() {
+            return Spliterators.iterator(spliterator());
+        }
+
+        @Override
+        public Spliterator.OfInt spliterator() {
+            return new IntListSpliterator(this, 0, size());
+        }
+    }
+
+    /**
+     * Index-based spliterator over an {@code IntList}.
+     * <p>
+     * Splits the remaining range in half, so every split knows its exact size and parallel
+     * streams balance their work just as well as they would on an array.
+     */
+    private static final class IntListSpliterator implements Spliterator.OfInt {
+
+        private final IntList list;
+        private int index;        // the next index to traverse
+        private final int fence;  // one past the last index
+
+        IntListSpliterator(IntList list, int origin, int fence) {
+            this.list = list;
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            int lo = index, mid = (lo + fence) >>> 1;
+            return (lo >= mid) ? null : new IntListSpliterator(list, lo, index = mid);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            Objects.requireNonNull(action);
+            if (index >= fence)
+                return false;
+            action.accept(list.getInt(index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            Objects.requireNonNull(action);
+            for (int i = index; i < fence; i++)
+                action.accept(list.getInt(i));
+            index = fence;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    /**
+     * Fixed-size {@code IntList} view of an {@code int} array.
+     * <p>
+     * Every operation that can run directly on the backing array does so: element access,
+     * search, bulk replacement, sorting, iteration and splitting. Search and aggregation
+     * are delegated to the {@link IntKernels}.
+     */
+    private static final class IntArrayList extends AbstractIntList {
+
+        private final int[] a;
+
+        IntArrayList(int[] a) {
+            this.a = a;
+        }
+
+        @Override
+        public int getInt(int index) {
+            return a[index];
+        }
+
+        @Override
+        public int setInt(int index, int value) {
+            int previousValue = a[index];
+            a[index] = value;
+            return previousValue;
+        }
+
+        @Override
+        public int size() {
+            return a.length;
+        }
+
+        @Override
+        public int indexOfInt(int value) {
+            return IntKernels.indexOf(a, 0, a.length, value);
+        }
+
+        @Override
+        public int countInt(int value) {
+            return IntKernels.count(a, 0, a.length, value);
+        }
+
+        @Override
+        public long sumInts() {
+            return IntKernels.sum(a, 0, a.length);
+        }
+
+        @Override
+        public int minInt() {
+            return IntKernels.min(a, 0, a.length);
+        }
+
+        @Override
+        public int maxInt() {
+            return IntKernels.max(a, 0, a.length);
+        }
+
+        @Override
+        public int[] filterInts(IntPredicate predicate) {
+            return IntKernels.filter(a, 0, a.length, predicate);
+        }
+
+        @Override
+        public void replaceAllInts(IntUnaryOperator operator) {
+            Objects.requireNonNull(operator);
+            for (int i = 0; i < a.length; i++)
+                a[i] = operator.applyAsInt(a[i]);
+        }
+
+        @Override
+        public void sort(Comparator<? super Integer> c) {
+            if (c == null || c == Comparator.naturalOrder()) {
+                Arrays.sort(a);
+            } else if (c == Comparator.reverseOrder()) {
+                Arrays.sort(a);
+                for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+                    int tmp = a[i];
+                    a[i] = a[j];
+                    a[j] = tmp;
+                }
+            } else {
+                super.sort(c);
+            }
+        }
+
+        @Override
+        public int[] toIntArray() {
+            return a.clone();
+        }
+
+        /*
+         * The array spliterator reports SIZED | SUBSIZED and splits in half on the backing array,
+         * which is exactly what a parallel stream needs to balance its work.
          */
-        return new AbstractList<>() {
-            @Override
-            public Integer get(int index) {
-                return a[index];
+        @Override
+        public Spliterator.OfInt spliterator() {
+            return Spliterators.spliterator(a, Spliterator.ORDERED);
+        }
+    }
+
+    /**
+     * Fixed-size {@code IntList} view of a memory-mapped file, split into pages of at most 1 GB.
+     */
+    private static final class MappedIntList extends AbstractIntList {
+
+        private static final int SHIFT = PAGE_SHIFT - 2;     // log2 of the ints per page
+        private static final int MASK = (1 << SHIFT) - 1;
+
+        private final IntBuffer[] pages;
+        private final int size;
+        private final boolean readOnly;
+
+        MappedIntList(IntBuffer[] pages, boolean readOnly) {
+            this.pages = pages;
+            this.size = (pages.length == 0) ? 0 : ((pages.length - 1) << SHIFT) + pages[pages.length - 1].capacity();
+            this.readOnly = readOnly;
+        }
+
+        @Override
+        public int getInt(int index) {
+            Objects.checkIndex(index, size);
+            return pages[index >>> SHIFT].get(index & MASK);
+        }
+
+        @Override
+        public int setInt(int index, int value) {
+            if (readOnly)
+                throw new UnsupportedOperationException("read-only mapping");
+            Objects.checkIndex(index, size);
+            IntBuffer page = pages[index >>> SHIFT];
+            int previousValue = page.get(index & MASK);
+            page.put(index & MASK, value);
+            return previousValue;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Skeletal implementation of {@code LongList}; see {@link AbstractIntList}.
+     */
+    private abstract static class AbstractLongList extends AbstractList<Long> implements LongList, RandomAccess {
+
+        @Override
+        public Long get(int index) {
+            return getLong(index);
+        }
+
+        @Override
+        public Long set(int index, Long value) {
+            return setLong(index, value);
+        }
+
+        @Override
+        public long setLong(int index, long value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return (o instanceof Long) ? indexOfLong((Long) o) : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            if (!(o instanceof Long))
+                return -1;
+            long value = (Long) o;
+            for (int i = size() - 1; i >= 0; i--)
+                if (getLong(i) == value)
+                    return i;
+            return -1;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) >= 0;
+        }
+
+        @Override
+        public int indexOfLong(long value) {
+            int size = size();
+            for (int i = 0; i < size; i++)
+                if (getLong(i) == value)
+                    return i;
+            return -1;
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<Long> operator) {
+            Objects.requireNonNull(operator);
+            int size = size();
+            for (int i = 0; i < size; i++)
+                setLong(i, operator.apply(getLong(i)));
+        }
+
+        @Override
+        public void replaceAllLongs(LongUnaryOperator operator) {
+            Objects.requireNonNull(operator);
+            int size = size();
+            for (int i = 0; i < size; i++)
+                setLong(i, operator.applyAsLong(getLong(i)));
+        }
+
+        @Override
+        public void sort(Comparator<? super Long> c) {
+            if (c == null || c == Comparator.naturalOrder() || c == Comparator.reverseOrder()) {
+                long[] sorted = toLongArray();
+                Arrays.sort(sorted);
+                boolean reversed = (c == Comparator.reverseOrder());
+                for (int i = 0; i < sorted.length; i++)
+                    setLong(i, sorted[reversed ? sorted.length - 1 - i : i]);
+            } else {
+                super.sort(c);
             }
+        }
+
+        @Override
+        public long[] toLongArray() {
+            long[] result = new long[size()];
+            for (int i = 0; i < result.length; i++)
+                result[i] = getLong(i);
+            return result;
+        }
+
+        @Override
+        public Object[] toArray() {
+            Object[] result = new Object[size()];
+            for (int i = 0; i < result.length; i++)
+                result[i] = getLong(i);
+            return result;
+        }
+
+        @Override
+        public PrimitiveIterator.OfLong iterator() {
+            return Spliterators.iterator(spliterator());
+        }
+
+        @Override
+        public Spliterator.OfLong spliterator() {
+            return new LongListSpliterator(this, 0, size());
+        }
+    }
+
+    /**
+     * Index-based spliterator over a {@code LongList}; see {@link IntListSpliterator}.
+     */
+    private static final class LongListSpliterator implements Spliterator.OfLong {
+
+        private final LongList list;
+        private int index;
+        private final int fence;
+
+        LongListSpliterator(LongList list, int origin, int fence) {
+            this.list = list;
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            int lo = index, mid = (lo + fence) >>> 1;
+            return (lo >= mid) ? null : new LongListSpliterator(list, lo, index = mid);
+        }
 
-            @Override
-            public Integer set(int index, Integer value) {
-                Integer previousValue = a[index];
-                a[index] = value;
-                return previousValue;
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            Objects.requireNonNull(action);
+            if (index >= fence)
+                return false;
+            action.accept(list.getLong(index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            Objects.requireNonNull(action);
+            for (int i = index; i < fence; i++)
+                action.accept(list.getLong(i));
+            index = fence;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    /**
+     * Fixed-size {@code LongList} view of a {@code long} array.
+     */
+    private static final class LongArrayList extends AbstractLongList {
+
+        private final long[] a;
+
+        LongArrayList(long[] a) {
+            this.a = a;
+        }
+
+        @Override
+        public long getLong(int index) {
+            return a[index];
+        }
+
+        @Override
+        public long setLong(int index, long value) {
+            long previousValue = a[index];
+            a[index] = value;
+            return previousValue;
+        }
+
+        @Override
+        public int size() {
+            return a.length;
+        }
+
+        @Override
+        public long[] toLongArray() {
+            return a.clone();
+        }
+
+        @Override
+        public Spliterator.OfLong spliterator() {
+            return Spliterators.spliterator(a, Spliterator.ORDERED);
+        }
+    }
+
+    /**
+     * Fixed-size {@code LongList} view of a memory-mapped file, split into pages of at most 1 GB.
+     */
+    private static final class MappedLongList extends AbstractLongList {
+
+        private static final int SHIFT = PAGE_SHIFT - 3;     // log2 of the longs per page
+        private static final int MASK = (1 << SHIFT) - 1;
+
+        private final LongBuffer[] pages;
+        private final int size;
+        private final boolean readOnly;
+
+        MappedLongList(LongBuffer[] pages, boolean readOnly) {
+            this.pages = pages;
+            this.size = (pages.length == 0) ? 0 : ((pages.length - 1) << SHIFT) + pages[pages.length - 1].capacity();
+            this.readOnly = readOnly;
+        }
+
+        @Override
+        public long getLong(int index) {
+            Objects.checkIndex(index, size);
+            return pages[index >>> SHIFT].get(index & MASK);
+        }
+
+        @Override
+        public long setLong(int index, long value) {
+            if (readOnly)
+                throw new UnsupportedOperationException("read-only mapping");
+            Objects.checkIndex(index, size);
+            LongBuffer page = pages[index >>> SHIFT];
+            long previousValue = page.get(index & MASK);
+            page.put(index & MASK, value);
+            return previousValue;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Fixed-size {@code DoubleList} view of a {@code double} array.
+     */
+    private static final class DoubleArrayList extends AbstractList<Double> implements DoubleList, RandomAccess {
+
+        private final double[] a;
+
+        DoubleArrayList(double[] a) {
+            this.a = a;
+        }
+
+        @Override
+        public Double get(int index) {
+            return a[index];
+        }
+
+        @Override
+        public double getDouble(int index) {
+            return a[index];
+        }
+
+        @Override
+        public Double set(int index, Double value) {
+            Double previousValue = a[index];
+            a[index] = value;
+            return previousValue;
+        }
+
+        @Override
+        public double setDouble(int index, double value) {
+            double previousValue = a[index];
+            a[index] = value;
+            return previousValue;
+        }
+
+        @Override
+        public int size() {
+            return a.length;
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return (o instanceof Double) ? indexOfDouble((Double) o) : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            if (!(o instanceof Double))
+                return -1;
+            long bits = Double.doubleToLongBits((Double) o);
+            for (int i = a.length - 1; i >= 0; i--)
+                if (Double.doubleToLongBits(a[i]) == bits)
+                    return i;
+            return -1;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) >= 0;
+        }
+
+        @Override
+        public int indexOfDouble(double value) {
+            // compare bit patterns, as Double.equals does
+            long bits = Double.doubleToLongBits(value);
+            for (int i = 0; i < a.length; i++)
+                if (Double.doubleToLongBits(a[i]) == bits)
+                    return i;
+            return -1;
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<Double> operator) {
+            Objects.requireNonNull(operator);
+            for (int i = 0; i < a.length; i++)
+                a[i] = operator.apply(a[i]);
+        }
+
+        @Override
+        public void replaceAllDoubles(DoubleUnaryOperator operator) {
+            Objects.requireNonNull(operator);
+            for (int i = 0; i < a.length; i++)
+                a[i] = operator.applyAsDouble(a[i]);
+        }
+
+        // Arrays.sort(double[]) uses the same total order as Double.compareTo
+        @Override
+        public void sort(Comparator<? super Double> c) {
+            if (c == null || c == Comparator.naturalOrder()) {
+                Arrays.sort(a);
+            } else if (c == Comparator.reverseOrder()) {
+                Arrays.sort(a);
+                for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+                    double tmp = a[i];
+                    a[i] = a[j];
+                    a[j] = tmp;
+                }
+            } else {
+                super.sort(c);
             }
+        }
+
+        @Override
+        public double[] toDoubleArray() {
+            return a.clone();
+        }
+
+        @Override
+        public Object[] toArray() {
+            Object[] result = new Object[a.length];
+            for (int i = 0; i < a.length; i++)
+                result[i] = a[i];
+            return result;
+        }
+
+        @Override
+        public PrimitiveIterator.OfDouble iterator() {
+            return Spliterators.iterator(spliterator());
+        }
+
+        @Override
+        public Spliterator.OfDouble spliterator() {
+            return Spliterators.spliterator(a, Spliterator.ORDERED);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        IntList list = intArrayAsList(new int[]{5, 3, 9, 1, 7});
+        list.sort(null);
+        System.out.println("sorted: " + list);
+        list.replaceAllInts(x -> x * 10);
+        System.out.println("scaled: " + list);
+        System.out.println("indexOf(70) = " + list.indexOf(70) + ", containsInt(4) = " + list.containsInt(4));
+        System.out.println("parallel sum = " + list.parallelIntStream().sum());
 
-            @Override
-            public int size() {
-                return a.length;
+        Path file = Files.createTempFile("lists", ".bin");
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+                for (long i = 0; i < 1000; i++)
+                    out.writeLong(i * i);
             }
-        };
+            LongList mapped = mappedLongList(file, FileChannel.MapMode.READ_WRITE, ByteOrder.BIG_ENDIAN);
+            mapped.setLong(0, -1);
+            System.out.println("mapped size = " + mapped.size() + ", sum = " + mapped.parallelLongStream().sum());
+            System.out.println("read back: " + mappedLongList(file).subList(0, 5));
+            System.out.println("as ints: " + mappedIntList(file).subList(0, 4));
+        } finally {
+            Files.delete(file);
+        }
     }
 
 }
@@ -0,0 +1,100 @@
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@code List<Long>} that also exposes its elements as primitive {@code long} values.
+ * <p>
+ * Every method of the {@code List} interface necessarily boxes and unboxes its elements.
+ * The primitive methods declared here give clients a boxing-free path to the same elements,
+ * while the list remains usable anywhere a {@code List<Long>} is expected.
+ * <p>
+ * Note:
+ * The {@code iterator} and {@code spliterator} methods are overridden with covariant return
+ * types, so a client holding a {@code LongList} gets the primitive specializations for free.
+ *
+ * @author Spyros Dellas
+ */
+public interface LongList extends List<Long> {
+
+    /**
+     * Returns the element at the specified position in this list, without boxing.
+     *
+     * @param index index of the element to return
+     * @return the element at the specified position in this list
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    long getLong(int index);
+
+    /**
+     * Replaces the element at the specified position in this list, without boxing.
+     *
+     * @param index index of the element to replace
+     * @param value the element to be stored at the specified position
+     * @return the element previously at the specified position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    long setLong(int index, long value);
+
+    /**
+     * Returns the index of the first occurrence of the specified value in this list,
+     * or -1 if this list does not contain it.
+     *
+     * @param value the value to search for
+     * @return the index of the first occurrence, or -1
+     */
+    int indexOfLong(long value);
+
+    /**
+     * Returns true if this list contains the specified value.
+     *
+     * @param value the value to search for
+     * @return true if this list contains the specified value
+     */
+    default boolean containsLong(long value) {
+        return indexOfLong(value) >= 0;
+    }
+
+    /**
+     * Replaces each element of this list with the result of applying the operator to that
+     * element, without boxing.
+     *
+     * @param operator the operator to apply to each element
+     * @throws NullPointerException if the operator is null
+     */
+    void replaceAllLongs(LongUnaryOperator operator);
+
+    /**
+     * Returns a new {@code long} array containing all of the elements in this list in proper sequence.
+     *
+     * @return an array containing all of the elements in this list
+     */
+    long[] toLongArray();
+
+    @Override
+    PrimitiveIterator.OfLong iterator();
+
+    @Override
+    Spliterator.OfLong spliterator();
+
+    /**
+     * Returns a sequential {@code LongStream} with this list as its source.
+     *
+     * @return a sequential {@code LongStream} over the elements in this list
+     */
+    default LongStream longStream() {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
+    /**
+     * Returns a possibly parallel {@code LongStream} with this list as its source.
+     *
+     * @return a possibly parallel {@code LongStream} over the elements in this list
+     */
+    default LongStream parallelLongStream() {
+        return StreamSupport.longStream(spliterator(), true);
+    }
+}
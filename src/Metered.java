@@ -0,0 +1,27 @@
+import java.util.Map;
+
+/**
+ * An object that exposes named metrics, so that a {@link MetricsRegistry} can publish them.
+ * <p>
+ * Counters only ever grow, so the registry can derive a rate from them; gauges are
+ * point-in-time values such as a size or a latency percentile. The set of names must not change
+ * over the lifetime of the object, and neither may the type of each gauge value.
+ *
+ * @author Spyros Dellas
+ */
+public interface Metered {
+
+    /**
+     * Returns the current values of the counters, keyed by name.
+     *
+     * @return the counters of this object
+     */
+    Map<String, Long> counters();
+
+    /**
+     * Returns the current values of the gauges, keyed by name.
+     *
+     * @return the gauges of this object
+     */
+    Map<String, Number> gauges();
+}
@@ -0,0 +1,185 @@
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A process-wide registry of {@link Metered} objects.
+ * <p>
+ * Every registered object is published as a JMX MBean under
+ * {@code effectivejava:type=Metered,name=<name>}, so its counters, gauges and rates can be watched in
+ * JConsole, and it is included in the pull-based {@link #snapshot() snapshot}.
+ * <p>
+ * For every counter {@code c} the registry also reports {@code cRate}, the mean number of
+ * events per second since the object was registered. Events counted before the registration
+ * are not included in the rate, although they are in the counter itself.
+ * <p>
+ * Note:
+ * The registry holds strong references to the registered objects, so clients that register
+ * short-lived objects must unregister them.
+ *
+ * @author Spyros Dellas
+ */
+public final class MetricsRegistry {
+
+    private static final String DOMAIN = "effectivejava";
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry(ManagementFactory.getPlatformMBeanServer());
+
+    private final MBeanServer server;
+    private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+
+    private MetricsRegistry(MBeanServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Returns the registry that publishes into the platform MBean server.
+     *
+     * @return the default registry
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Registers the given object under the given name and publishes it as an MBean.
+     *
+     * @param name    the name of the object; must be unique in this registry
+     * @param metered the object to register
+     * @throws IllegalArgumentException if the name is already registered
+     * @throws NullPointerException     if any argument is null
+     */
+    public void register(String name, Metered metered) {
+        Objects.requireNonNull(metered);
+        Registration registration = new Registration(metered);
+        if (registrations.putIfAbsent(name, registration) != null)
+            throw new IllegalArgumentException("Already registered: " + name);
+        try {
+            server.registerMBean(registration, objectName(name));
+        } catch (JMException e) {
+            registrations.remove(name);
+            throw new IllegalStateException("Cannot publish " + name, e);
+        }
+    }
+
+    /**
+     * Removes the object registered under the given name, if any.
+     *
+     * @param name the name of the object
+     * @return true if an object was registered under the given name
+     */
+    public boolean unregister(String name) {
+        if (registrations.remove(name) == null)
+            return false;
+        try {
+            server.unregisterMBean(objectName(name));
+        } catch (InstanceNotFoundException e) {
+            // somebody unregistered the MBean behind our back; nothing left to do
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unpublish " + name, e);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the current metrics of every registered object.
+     * <p>
+     * The outer map is keyed by registration name and the inner maps by metric name, both in
+     * alphabetical order. The returned maps are immutable and are not updated afterwards.
+     *
+     * @return a snapshot of all the registered metrics
+     */
+    public Map<String, Map<String, Number>> snapshot() {
+        Map<String, Map<String, Number>> snapshot = new TreeMap<>();
+        registrations.forEach((name, registration) -> snapshot.put(name, registration.values()));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private static ObjectName objectName(String name) throws MalformedObjectNameException {
+        return new ObjectName(DOMAIN + ":type=Metered,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * A registered object, exposed to JMX as a read-only dynamic MBean.
+     * <p>
+     * A dynamic MBean lets us publish whatever metrics an object happens to have without
+     * requiring a separate MBean interface for each kind of object.
+     */
+    private static final class Registration implements DynamicMBean {
+
+        private static final String RATE_SUFFIX = "Rate";
+
+        private final Metered metered;
+        private final Map<String, Long> baseline;   // the counters at registration, so that rates ignore earlier events
+        private final long registeredAt;
+        private final MBeanInfo info;
+
+        Registration(Metered metered) {
+            this.metered = metered;
+            this.baseline = Map.copyOf(metered.counters());
+            this.registeredAt = System.nanoTime();
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String counter : metered.counters().keySet()) {
+                attributes.add(attribute(counter, Long.class));
+                attributes.add(attribute(counter + RATE_SUFFIX, Double.class));
+            }
+            metered.gauges().forEach((gauge, value) -> attributes.add(attribute(gauge, value.getClass())));
+            this.info = new MBeanInfo(metered.getClass().getName(), "Metrics of a " + metered.getClass().getSimpleName(),
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        private static MBeanAttributeInfo attribute(String name, Class<?> type) {
+            return new MBeanAttributeInfo(name, type.getName(), name, true, false, false);
+        }
+
+        // Reads every metric once, so that the rates are consistent with the counters
+        Map<String, Number> values() {
+            double seconds = Math.max(System.nanoTime() - registeredAt, 1) / 1e9;
+            Map<String, Number> values = new TreeMap<>();
+            metered.counters().forEach((counter, value) -> {
+                values.put(counter, value);
+                values.put(counter + RATE_SUFFIX, (value - baseline.getOrDefault(counter, 0L)) / seconds);
+            });
+            values.putAll(metered.gauges());
+            return Collections.unmodifiableMap(values);
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = values().get(attribute);
+            if (value == null)
+                throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Number> values = values();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes)
+                if (values.containsKey(attribute))
+                    list.add(new Attribute(attribute, values.get(attribute)));
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Read-only attribute: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return info;
+        }
+    }
+}
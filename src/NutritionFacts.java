@@ -1,3 +1,12 @@
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * This class demonstrates the Builder pattern.
  *
@@ -15,11 +24,20 @@
  * parameters, especially if many of the parameters are optional or of identical type.
  * Client code is much easier to read and write with builders than with telescoping
  * constructors, and builders are much safer than JavaBeans.
+ * <p>
+ * Two further options serve clients that build large numbers of instances, e.g. from a feed.
+ * A builder can be {@link Builder#reset reset} and reused, so that a parse loop needs a single
+ * builder. And a builder in {@link Builder#interning interning} mode returns a canonical
+ * instance for each distinct combination of values, so that identical facts are held in memory
+ * only once. The canonical instances are held weakly, so an instance that is no longer in use
+ * anywhere else can still be garbage collected.
  *
  * @author Spyros Dellas
  */
 public class NutritionFacts {
 
+    private static final Interner INTERNER = new Interner();
+
     private final String name;
     private final int servingSize;
     private final int servings;
@@ -35,9 +53,9 @@ public class NutritionFacts {
     public static class Builder {
 
         // Required parameters
-        private final String name;
-        private final int servingSize;
-        private final int servings;
+        private String name;
+        private int servingSize;
+        private int servings;
 
         // Optional parameters - initialized to default values
         private int calories = 0;
@@ -45,12 +63,45 @@ public class NutritionFacts {
         private int sodium = 0;
         private int carbohydrate = 0;
 
+        private boolean interning = false;
+        private Probe probe;    // looks this builder's values up in the interner; created on first use
+
         public Builder(String name, int servingSize, int servings) {
             this.name = name;
             this.servingSize = servingSize;
             this.servings = servings;
         }
 
+        /**
+         * Starts a new instance, as if this builder had just been created with the given
+         * parameters. The optional parameters return to their default values; the interning
+         * mode is kept.
+         *
+         * @return this builder
+         */
+        public Builder reset(String name, int servingSize, int servings) {
+            this.name = name;
+            this.servingSize = servingSize;
+            this.servings = servings;
+            calories = 0;
+            fat = 0;
+            sodium = 0;
+            carbohydrate = 0;
+            return this;
+        }
+
+        /**
+         * Sets the interning mode. In interning mode, {@link #build()} returns the canonical
+         * instance with the values of this builder, creating it only if there is none.
+         *
+         * @param val true to turn interning on
+         * @return this builder
+         */
+        public Builder interning(boolean val) {
+            interning = val;
+            return this;
+        }
+
         public Builder calories(int val) {
             calories = val;
             return this;
@@ -72,7 +123,11 @@ public class NutritionFacts {
         }
 
         public NutritionFacts build() {
-            return new NutritionFacts(this);
+            if (!interning)
+                return new NutritionFacts(this);
+            if (probe == null)
+                probe = new Probe(this);
+            return INTERNER.intern(this);
         }
     }
 
@@ -87,6 +142,153 @@ public class NutritionFacts {
         carbohydrate = builder.carbohydrate;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof NutritionFacts))
+            return false;
+        NutritionFacts nf = (NutritionFacts) o;
+        return servingSize == nf.servingSize && servings == nf.servings && calories == nf.calories
+                && fat == nf.fat && sodium == nf.sodium && carbohydrate == nf.carbohydrate
+                && Objects.equals(name, nf.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash(name, servingSize, servings, calories, fat, sodium, carbohydrate);
+    }
+
+    private static int hash(String name, int servingSize, int servings, int calories, int fat, int sodium,
+                            int carbohydrate) {
+        int result = Objects.hashCode(name);
+        result = 31 * result + Integer.hashCode(servingSize);
+        result = 31 * result + Integer.hashCode(servings);
+        result = 31 * result + Integer.hashCode(calories);
+        result = 31 * result + Integer.hashCode(fat);
+        result = 31 * result + Integer.hashCode(sodium);
+        result = 31 * result + Integer.hashCode(carbohydrate);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": serving size " + servingSize + ", servings " + servings + ", calories " + calories
+                + ", fat " + fat + ", sodium " + sodium + ", carbohydrate " + carbohydrate;
+    }
+
+    /**
+     * Returns the number of canonical instances currently held by the interning cache. Instances
+     * that have been garbage collected may still be counted until the cache notices.
+     *
+     * @return the approximate number of canonical instances
+     */
+    public static int internedCount() {
+        return INTERNER.size();
+    }
+
+    /*
+     * A weak reference to a canonical instance. It is both the key and the value of its entry
+     * in the interner, and it caches the hash code of its referent so that the entry can still be
+     * found, and removed, once the referent has been collected. Two references are equal if
+     * they refer to equal instances; a cleared reference is only equal to itself.
+     */
+    private static final class CanonicalRef extends WeakReference<NutritionFacts> {
+        private final int hash;
+
+        CanonicalRef(NutritionFacts referent, ReferenceQueue<NutritionFacts> queue) {
+            super(referent, queue);
+            hash = referent.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof CanonicalRef))
+                return false;
+            NutritionFacts referent = get();
+            return referent != null && referent.equals(((CanonicalRef) o).get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /*
+     * Looks the current values of a builder up in the interner, without creating an instance.
+     * The map compares the probe against its keys with probe.equals(key), so the probe only needs
+     * to know how to compare itself with a CanonicalRef.
+     */
+    private static final class Probe {
+        private final Builder builder;
+
+        Probe(Builder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CanonicalRef))
+                return false;
+            NutritionFacts nf = ((CanonicalRef) o).get();
+            Builder b = builder;
+            return nf != null && b.servingSize == nf.servingSize && b.servings == nf.servings
+                    && b.calories == nf.calories && b.fat == nf.fat && b.sodium == nf.sodium
+                    && b.carbohydrate == nf.carbohydrate && Objects.equals(b.name, nf.name);
+        }
+
+        @Override
+        public int hashCode() {
+            Builder b = builder;
+            return hash(b.name, b.servingSize, b.servings, b.calories, b.fat, b.sodium, b.carbohydrate);
+        }
+    }
+
+    /*
+     * A concurrent canonicalization cache with weak values. A hit costs a hash lookup and no
+     * allocation; a miss creates the instance and races to publish it with putIfAbsent, so that
+     * all threads agree on a single canonical instance. The entries of collected instances are
+     * expunged on every call.
+     */
+    private static final class Interner {
+        private final ConcurrentHashMap<Object, CanonicalRef> map = new ConcurrentHashMap<>();
+        private final ReferenceQueue<NutritionFacts> queue = new ReferenceQueue<>();
+
+        NutritionFacts intern(Builder builder) {
+            expungeStaleEntries();
+            CanonicalRef ref = map.get(builder.probe);
+            NutritionFacts canonical;
+            if (ref != null && (canonical = ref.get()) != null)
+                return canonical;
+
+            NutritionFacts candidate = new NutritionFacts(builder);
+            CanonicalRef candidateRef = new CanonicalRef(candidate, queue);
+            while (true) {
+                CanonicalRef existing = map.putIfAbsent(candidateRef, candidateRef);
+                if (existing == null)
+                    return candidate;
+                if ((canonical = existing.get()) != null)
+                    return canonical;
+                // The existing instance was collected before its entry was expunged
+                map.remove(existing, existing);
+            }
+        }
+
+        private void expungeStaleEntries() {
+            Reference<? extends NutritionFacts> ref;
+            while ((ref = queue.poll()) != null)
+                map.remove(ref, ref);
+        }
+
+        int size() {
+            expungeStaleEntries();
+            return map.size();
+        }
+    }
+
     public static void main(String[] args) {
         NutritionFacts beans = new Builder("Beans", 250, 1)
                 .calories(250)
@@ -94,5 +296,22 @@ public class NutritionFacts {
                 .sodium(5)
                 .carbohydrate(30)
                 .build();
+        System.out.println(beans);
+
+        // A parse loop over a feed with few distinct rows, reusing one interning builder
+        String[] foods = {"Beans", "Rice", "Lentils"};
+        Builder builder = new Builder(null, 0, 0).interning(true);
+        List<NutritionFacts> feed = new ArrayList<>();
+        for (int i = 0; i < 1_000_000; i++) {
+            feed.add(builder.reset(foods[i % foods.length], 250, 1)
+                    .calories(100 + i % 4)
+                    .fat(7)
+                    .build());
+        }
+        System.out.println(feed.size() + " rows, " + new HashSet<>(feed).size() + " distinct, "
+                + internedCount() + " canonical instances");
+        System.out.println("canonical: " + (feed.get(0) == feed.get(12)));
+        System.out.println("equal, not identical without interning: "
+                + new Builder("Beans", 250, 1).calories(100).fat(7).build().equals(feed.get(0)));
     }
 }
@@ -0,0 +1,446 @@
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * A table of nutrition facts stored column by column, for databases of millions of foods.
+ * <p>
+ * Building each {@link NutritionFacts} through its {@code Builder} costs two objects per row.
+ * Here a row is just an index: every nutrient is an {@code int[]} column, and the name of the
+ * food is interned into a dictionary and stored as an {@code int} id. The loaders parse straight
+ * into the columns, and {@code NutritionFacts} objects are only materialized on demand.
+ * <p>
+ * Queries run in parallel over chunks of rows. A filter produces a {@code BitSet} of matching
+ * rows, which can be combined with other filters through the {@code BitSet} operations, and
+ * then summed or grouped. Each parallel task accumulates into its own array or {@code BitSet},
+ * and the partial results are merged pairwise as the tasks complete.
+ * <p>
+ * A table is not thread-safe; the queries run in parallel, but they must not overlap with
+ * additions to the table.
+ *
+ * @author Spyros Dellas
+ */
+public class NutritionTable {
+
+    public enum Column {
+        SERVING_SIZE, SERVINGS, CALORIES, FAT, SODIUM, CARBOHYDRATE
+    }
+
+    private static final Column[] COLUMNS = Column.values();
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // Rows per task in the parallel queries; large enough to amortize the cost of a task
+    private static final int CHUNK = 1 << 16;
+
+    // Identifies the binary format; "NUTR"
+    private static final int MAGIC = 0x4e555452;
+
+    // the name dictionary
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    // the columns; the nutrients indexed by Column.ordinal()
+    private int[] nameColumn;
+    private final int[][] columns = new int[COLUMNS.length][];
+    private int size = 0;
+
+    /**
+     * Creates an empty table with room for the given number of rows.
+     *
+     * @param initialCapacity the initial number of rows
+     * @throws IllegalArgumentException if initialCapacity is negative
+     */
+    public NutritionTable(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+        nameColumn = new int[initialCapacity];
+        for (int c = 0; c < columns.length; c++)
+            columns[c] = new int[initialCapacity];
+    }
+
+    public NutritionTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Adds a row to this table.
+     *
+     * @return the index of the new row
+     * @throws NullPointerException if name is null
+     */
+    public int add(String name, int servingSize, int servings, int calories, int fat, int sodium, int carbohydrate) {
+        int row = addRow(nameId(name));
+        columns[Column.SERVING_SIZE.ordinal()][row] = servingSize;
+        columns[Column.SERVINGS.ordinal()][row] = servings;
+        columns[Column.CALORIES.ordinal()][row] = calories;
+        columns[Column.FAT.ordinal()][row] = fat;
+        columns[Column.SODIUM.ordinal()][row] = sodium;
+        columns[Column.CARBOHYDRATE.ordinal()][row] = carbohydrate;
+        return row;
+    }
+
+    private int nameId(String name) {
+        return nameIds.computeIfAbsent(Objects.requireNonNull(name), n -> {
+            names.add(n);
+            return names.size() - 1;
+        });
+    }
+
+    // Appends a row with the given name and zero nutrients, growing the columns if needed
+    private int addRow(int nameId) {
+        if (size == nameColumn.length)
+            ensureCapacity(Math.max(DEFAULT_CAPACITY, 2 * size));
+        nameColumn[size] = nameId;
+        return size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= nameColumn.length)
+            return;
+        nameColumn = Arrays.copyOf(nameColumn, capacity);
+        for (int c = 0; c < columns.length; c++)
+            columns[c] = Arrays.copyOf(columns[c], capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of distinct food names in this table.
+     *
+     * @return the size of the name dictionary
+     */
+    public int distinctNames() {
+        return names.size();
+    }
+
+    public String name(int row) {
+        return names.get(nameColumn[Objects.checkIndex(row, size)]);
+    }
+
+    public int get(Column column, int row) {
+        return columns[column.ordinal()][Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * Materializes the nutrition facts in the given row.
+     *
+     * @param row the row
+     * @return new {@code NutritionFacts} for the row
+     * @throws IndexOutOfBoundsException if the row is out of range
+     */
+    public NutritionFacts facts(int row) {
+        return new NutritionFacts.Builder(name(row),
+                columns[Column.SERVING_SIZE.ordinal()][row], columns[Column.SERVINGS.ordinal()][row])
+                .calories(columns[Column.CALORIES.ordinal()][row])
+                .fat(columns[Column.FAT.ordinal()][row])
+                .sodium(columns[Column.SODIUM.ordinal()][row])
+                .carbohydrate(columns[Column.CARBOHYDRATE.ordinal()][row])
+                .build();
+    }
+
+    /**
+     * Materializes the nutrition facts in the given rows.
+     *
+     * @param rows the rows
+     * @return a new list of {@code NutritionFacts}, in row order
+     * @throws IndexOutOfBoundsException if a row is out of range
+     */
+    public List<NutritionFacts> facts(BitSet rows) {
+        List<NutritionFacts> facts = new ArrayList<>(rows.cardinality());
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1))
+            facts.add(facts(row));
+        return facts;
+    }
+
+    private int chunks() {
+        return (size + CHUNK - 1) / CHUNK;
+    }
+
+    /**
+     * Returns the rows in which the value of the given column satisfies the given predicate.
+     *
+     * @param column    the column
+     * @param predicate the predicate on the values of the column
+     * @return a new {@code BitSet} with a bit set for each matching row
+     */
+    public BitSet where(Column column, IntPredicate predicate) {
+        Objects.requireNonNull(predicate);
+        int[] values = columns[column.ordinal()];
+        int rows = size;
+        return IntStream.range(0, chunks())
+                .parallel()
+                .collect(BitSet::new,
+                        (matches, chunk) -> {
+                            for (int i = chunk * CHUNK, end = Math.min(rows, i + CHUNK); i < end; i++)
+                                if (predicate.test(values[i]))
+                                    matches.set(i);
+                        },
+                        BitSet::or);
+    }
+
+    /**
+     * Returns the rows of the food with the given name.
+     *
+     * @param name the name of the food
+     * @return a new {@code BitSet} with a bit set for each matching row
+     */
+    public BitSet whereName(String name) {
+        Integer id = nameIds.get(name);
+        if (id == null)
+            return new BitSet();
+        int nameId = id;
+        int rows = size;
+        return IntStream.range(0, chunks())
+                .parallel()
+                .collect(BitSet::new,
+                        (matches, chunk) -> {
+                            for (int i = chunk * CHUNK, end = Math.min(rows, i + CHUNK); i < end; i++)
+                                if (nameColumn[i] == nameId)
+                                    matches.set(i);
+                        },
+                        BitSet::or);
+    }
+
+    /**
+     * Returns the sum of the given column over all the rows.
+     *
+     * @param column the column
+     * @return the sum of the column
+     */
+    public long sum(Column column) {
+        return Arrays.stream(columns[column.ordinal()], 0, size).parallel().asLongStream().sum();
+    }
+
+    /**
+     * Returns the sum of the given column over the given rows.
+     *
+     * @param column the column
+     * @param rows   the rows, typically the result of a filter
+     * @return the sum of the column over the rows
+     * @throws IndexOutOfBoundsException if a row is out of range
+     */
+    public long sum(Column column, BitSet rows) {
+        checkRows(rows);
+        int[] values = columns[column.ordinal()];
+        return IntStream.range(0, chunks())
+                .parallel()
+                .mapToLong(chunk -> {
+                    long sum = 0;
+                    int end = (chunk + 1) * CHUNK;
+                    for (int row = rows.nextSetBit(chunk * CHUNK); row >= 0 && row < end; row = rows.nextSetBit(row + 1))
+                        sum += values[row];
+                    return sum;
+                })
+                .sum();
+    }
+
+    /**
+     * Sums the given column over the given rows, grouped by food name.
+     *
+     * @param column the column
+     * @param rows   the rows, typically the result of a filter
+     * @return the sum of the column for each name that appears in the rows
+     * @throws IndexOutOfBoundsException if a row is out of range
+     */
+    public Map<String, Long> sumByName(Column column, BitSet rows) {
+        checkRows(rows);
+        int[] values = columns[column.ordinal()];
+        int distinct = names.size();
+        // The sum of each name, followed by its number of rows, to tell absent names from zero sums
+        long[] sums = IntStream.range(0, chunks())
+                .parallel()
+                .collect(() -> new long[2 * distinct],
+                        (acc, chunk) -> {
+                            int end = (chunk + 1) * CHUNK;
+                            for (int row = rows.nextSetBit(chunk * CHUNK); row >= 0 && row < end; row = rows.nextSetBit(row + 1)) {
+                                int id = nameColumn[row];
+                                acc[id] += values[row];
+                                acc[distinct + id]++;
+                            }
+                        },
+                        (left, right) -> {
+                            for (int i = 0; i < left.length; i++)
+                                left[i] += right[i];
+                        });
+        Map<String, Long> byName = new LinkedHashMap<>();
+        for (int id = 0; id < distinct; id++)
+            if (sums[distinct + id] != 0)
+                byName.put(names.get(id), sums[id]);
+        return byName;
+    }
+
+    private void checkRows(BitSet rows) {
+        if (rows.length() > size)
+            throw new IndexOutOfBoundsException("Row out of range: " + (rows.length() - 1));
+    }
+
+    /**
+     * Loads a table from a CSV file.
+     * <p>
+     * The first line is a header and is skipped. Every other line holds a name followed by the six
+     * columns in the order of {@link Column}, separated by commas. Names can't contain commas,
+     * and quoting is not supported. The numbers are parsed in place, without splitting the line.
+     *
+     * @param path the path of the file
+     * @return a new table with the rows of the file
+     * @throws IOException if an IO error occurs, or a line is malformed
+     */
+    public static NutritionTable readCsv(Path path) throws IOException {
+        NutritionTable table = new NutritionTable();
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            reader.readLine();
+            int lineNumber = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty())
+                    continue;
+                int comma = line.indexOf(',');
+                if (comma < 0)
+                    throw new IOException("Line " + lineNumber + ": no columns");
+                int row = table.addRow(table.nameId(line.substring(0, comma)));
+                int start = comma + 1;
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    int end = line.indexOf(',', start);
+                    if (end < 0)
+                        end = line.length();
+                    table.columns[c][row] = parseInt(line, start, end, lineNumber);
+                    start = end + 1;
+                }
+                if (start <= line.length())
+                    throw new IOException("Line " + lineNumber + ": too many columns");
+            }
+        }
+        return table;
+    }
+
+    private static int parseInt(String line, int start, int end, int lineNumber) throws IOException {
+        try {
+            return Integer.parseInt(line, start, end, 10);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IOException("Line " + lineNumber + ": not a number in columns " + start + " to " + end, e);
+        }
+    }
+
+    /**
+     * Writes this table to a file in a binary format, which {@link #readBinary(Path)} loads much
+     * faster than CSV.
+     * <p>
+     * The file holds a header, the name dictionary, and then every column as a contiguous run of
+     * big-endian {@code int}s.
+     *
+     * @param path the path of the file
+     * @throws IOException if an IO error occurs
+     */
+    public void writeBinary(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(size);
+            out.writeInt(names.size());
+            for (String name : names) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            writeInts(out, nameColumn);
+            for (int[] column : columns)
+                writeInts(out, column);
+        }
+    }
+
+    private void writeInts(DataOutputStream out, int[] column) throws IOException {
+        for (int i = 0; i < size; i++)
+            out.writeInt(column[i]);
+    }
+
+    /**
+     * Loads a table written by {@link #writeBinary(Path)}.
+     * <p>
+     * The file is memory-mapped, and every column is copied into its array in bulk. The file must
+     * not be larger than 2 GB.
+     *
+     * @param path the path of the file
+     * @return a new table with the rows of the file
+     * @throws IOException if an IO error occurs, or the file is not in the binary format
+     */
+    public static NutritionTable readBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC)
+                throw new IOException("Not a nutrition table: " + path);
+            int rows = buffer.getInt();
+            int distinct = buffer.getInt();
+            NutritionTable table = new NutritionTable(rows);
+            for (int id = 0; id < distinct; id++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                table.nameId(new String(bytes, StandardCharsets.UTF_8));
+            }
+            IntBuffer ints = buffer.slice().asIntBuffer();
+            if (ints.remaining() != (long) rows * (COLUMNS.length + 1))
+                throw new IOException("Truncated nutrition table: " + path);
+            ints.get(table.nameColumn, 0, rows);
+            for (int[] column : table.columns)
+                ints.get(column, 0, rows);
+            table.size = rows;
+            return table;
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Malformed nutrition table: " + path, e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String[] foods = {"Beans", "Rice", "Lentils", "Oats", "Milk", "Bread", "Apples", "Cheese"};
+        int rows = 2_000_000;
+        SplittableRandom random = new SplittableRandom(3);
+        Path csv = Files.createTempFile("nutrition", ".csv");
+        Path bin = Files.createTempFile("nutrition", ".bin");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+                writer.write("name,servingSize,servings,calories,fat,sodium,carbohydrate");
+                writer.newLine();
+                for (int i = 0; i < rows; i++) {
+                    writer.write(foods[random.nextInt(foods.length)] + "," + random.nextInt(50, 500) + ","
+                            + random.nextInt(1, 10) + "," + random.nextInt(0, 800) + "," + random.nextInt(0, 40)
+                            + "," + random.nextInt(0, 900) + "," + random.nextInt(0, 120));
+                    writer.newLine();
+                }
+            }
+
+            long start = System.nanoTime();
+            NutritionTable table = readCsv(csv);
+            System.out.printf("read %d CSV rows in %.1f ms%n", table.size(), (System.nanoTime() - start) / 1e6);
+
+            table.writeBinary(bin);
+            start = System.nanoTime();
+            NutritionTable copy = readBinary(bin);
+            System.out.printf("read %d binary rows in %.1f ms%n", copy.size(), (System.nanoTime() - start) / 1e6);
+            System.out.println("same calories: " + (table.sum(Column.CALORIES) == copy.sum(Column.CALORIES)));
+
+            BitSet lowFat = table.where(Column.FAT, fat -> fat < 5);
+            lowFat.and(table.where(Column.SODIUM, sodium -> sodium < 100));
+            System.out.println("low fat, low sodium rows: " + lowFat.cardinality());
+            System.out.println("their calories: " + table.sum(Column.CALORIES, lowFat));
+            System.out.println("their calories by food: " + table.sumByName(Column.CALORIES, lowFat));
+            System.out.println("rows of beans: " + table.whereName("Beans").cardinality());
+            BitSet richBeans = table.whereName("Beans");
+            richBeans.and(table.where(Column.CALORIES, calories -> calories > 795));
+            List<NutritionFacts> facts = table.facts(richBeans);
+            System.out.println("materialized " + facts.size() + " beans with more than 795 calories");
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(bin);
+        }
+    }
+}
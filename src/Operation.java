@@ -1,5 +1,12 @@
+import java.util.Objects;
+
 /**
  * Enum type with constant-specific class bodies & data
+ * <p>
+ * Besides applying an operation to a single pair of operands, each constant can apply itself
+ * to whole arrays of operands. The bulk methods dispatch on the constant once per batch, and
+ * each constant's loop is a simple counted loop over arrays, which the JIT compiles to SIMD
+ * instructions.
  *
  * @author Spyros Dellas
  */
@@ -8,21 +15,41 @@ public enum Operation {
         public double apply(double x, double y) {
             return x + y;
         }
+
+        void applyRange(double[] xs, double[] ys, double[] out, int from, int to) {
+            for (int i = from; i < to; i++)
+                out[i] = xs[i] + ys[i];
+        }
     },
     MINUS("-") {
         public double apply(double x, double y) {
             return x - y;
         }
+
+        void applyRange(double[] xs, double[] ys, double[] out, int from, int to) {
+            for (int i = from; i < to; i++)
+                out[i] = xs[i] - ys[i];
+        }
     },
     TIMES("*") {
         public double apply(double x, double y) {
             return x * y;
         }
+
+        void applyRange(double[] xs, double[] ys, double[] out, int from, int to) {
+            for (int i = from; i < to; i++)
+                out[i] = xs[i] * ys[i];
+        }
     },
     DIVIDE("/") {
         public double apply(double x, double y) {
             return x / y;
         }
+
+        void applyRange(double[] xs, double[] ys, double[] out, int from, int to) {
+            for (int i = from; i < to; i++)
+                out[i] = xs[i] / ys[i];
+        }
     };
 
     private final String symbol;
@@ -37,4 +64,39 @@ public enum Operation {
     }
 
     public abstract double apply(double x, double y);
+
+    // The constant-specific bulk loop; the range has already been checked
+    abstract void applyRange(double[] xs, double[] ys, double[] out, int from, int to);
+
+    /**
+     * Applies this operation to every pair of operands in the given range, so that
+     * {@code out[i] = apply(xs[i], ys[i])} for every i in the range.
+     *
+     * @param xs   the first operands
+     * @param ys   the second operands
+     * @param out  receives the results; may be the same array as xs or ys
+     * @param from the index of the first pair, inclusive
+     * @param to   the index of the last pair, exclusive
+     * @throws IndexOutOfBoundsException if the range is out of bounds for any of the arrays
+     */
+    public void applyAll(double[] xs, double[] ys, double[] out, int from, int to) {
+        Objects.checkFromToIndex(from, to, xs.length);
+        Objects.checkFromToIndex(from, to, ys.length);
+        Objects.checkFromToIndex(from, to, out.length);
+        applyRange(xs, ys, out, from, to);
+    }
+
+    /**
+     * Applies this operation to every pair of operands, so that {@code out[i] = apply(xs[i], ys[i])}.
+     *
+     * @param xs  the first operands
+     * @param ys  the second operands
+     * @param out receives the results; may be the same array as xs or ys
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public void applyAll(double[] xs, double[] ys, double[] out) {
+        if (xs.length != ys.length || xs.length != out.length)
+            throw new IllegalArgumentException("Array lengths differ: " + xs.length + ", " + ys.length + ", " + out.length);
+        applyRange(xs, ys, out, 0, out.length);
+    }
 }
@@ -1,3 +1,5 @@
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.function.DoubleBinaryOperator;
 
 /**
@@ -11,25 +13,43 @@ import java.util.function.DoubleBinaryOperator;
  * @author Spyros Dellas
  */
 public enum OperationImproved {
-    PLUS("+", Double::sum),
-    MINUS("-", (x, y) -> x - y),
-    TIMES("*", (x, y) -> x * y),
-    DIVIDE("/", (x, y) -> x / y);
+    PLUS("+", Double::sum, OperationImproved::plusAll),
+    MINUS("-", (x, y) -> x - y, OperationImproved::minusAll),
+    TIMES("*", (x, y) -> x * y, OperationImproved::timesAll),
+    DIVIDE("/", (x, y) -> x / y, OperationImproved::divideAll);
+
+    /**
+     * Applies an operation to a range of pairs of operands held in arrays.
+     */
+    @FunctionalInterface
+    private interface BulkOperator {
+        void applyAll(double[] xs, double[] ys, double[] out, int from, int to);
+    }
 
     private final String symbol;
     private final DoubleBinaryOperator operator;
+    private final BulkOperator bulkOperator;
 
     /**
      * We’re using the DoubleBinaryOperator interface for the lambdas
      * that represent the enum constant’s behavior.
      * This is one of the many predefined functional interfaces in {@code java.util.function}
      *
-     * @param symbol   a symbol representing the operation
-     * @param operator the operator to apply to specified arguments
+     * <p>
+     * The bulk operator is a separate method for each constant rather than a loop over
+     * {@code operator}: a single shared loop would call {@code applyAsDouble} at a call site that
+     * sees all four lambdas, and a megamorphic call can neither be inlined nor vectorized.
+     * Each loop is a private static method, passed as a method reference, so that every constant
+     * declaration stays on one line.
+     *
+     * @param symbol       a symbol representing the operation
+     * @param operator     the operator to apply to specified arguments
+     * @param bulkOperator the operator to apply to arrays of arguments
      */
-    OperationImproved(String symbol, DoubleBinaryOperator operator) {
+    OperationImproved(String symbol, DoubleBinaryOperator operator, BulkOperator bulkOperator) {
         this.symbol = symbol;
         this.operator = operator;
+        this.bulkOperator = bulkOperator;
     }
 
     @Override
@@ -40,4 +60,73 @@ public enum OperationImproved {
     public double apply(double x, double y) {
         return operator.applyAsDouble(x, y);
     }
+
+    /**
+     * Applies this operation to every pair of operands in the given range, so that
+     * {@code out[i] = apply(xs[i], ys[i])} for every i in the range.
+     *
+     * @param xs   the first operands
+     * @param ys   the second operands
+     * @param out  receives the results; may be the same array as xs or ys
+     * @param from the index of the first pair, inclusive
+     * @param to   the index of the last pair, exclusive
+     * @throws IndexOutOfBoundsException if the range is out of bounds for any of the arrays
+     */
+    public void applyAll(double[] xs, double[] ys, double[] out, int from, int to) {
+        Objects.checkFromToIndex(from, to, xs.length);
+        Objects.checkFromToIndex(from, to, ys.length);
+        Objects.checkFromToIndex(from, to, out.length);
+        bulkOperator.applyAll(xs, ys, out, from, to);
+    }
+
+    /**
+     * Applies this operation to every pair of operands, so that {@code out[i] = apply(xs[i], ys[i])}.
+     *
+     * @param xs  the first operands
+     * @param ys  the second operands
+     * @param out receives the results; may be the same array as xs or ys
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public void applyAll(double[] xs, double[] ys, double[] out) {
+        if (xs.length != ys.length || xs.length != out.length)
+            throw new IllegalArgumentException("Array lengths differ: " + xs.length + ", " + ys.length + ", " + out.length);
+        bulkOperator.applyAll(xs, ys, out, 0, out.length);
+    }
+
+    /*
+     * The bulk loops, one per constant. Each is a simple counted loop over arrays, which the
+     * JIT compiles to SIMD instructions.
+     */
+    private static void plusAll(double[] xs, double[] ys, double[] out, int from, int to) {
+        for (int i = from; i < to; i++)
+            out[i] = xs[i] + ys[i];
+    }
+
+    private static void minusAll(double[] xs, double[] ys, double[] out, int from, int to) {
+        for (int i = from; i < to; i++)
+            out[i] = xs[i] - ys[i];
+    }
+
+    private static void timesAll(double[] xs, double[] ys, double[] out, int from, int to) {
+        for (int i = from; i < to; i++)
+            out[i] = xs[i] * ys[i];
+    }
+
+    private static void divideAll(double[] xs, double[] ys, double[] out, int from, int to) {
+        for (int i = from; i < to; i++)
+            out[i] = xs[i] / ys[i];
+    }
+
+    public static void main(String[] args) {
+        double[] xs = {1, 2, 3, 4};
+        double[] ys = {4, 3, 2, 1};
+        double[] out = new double[4];
+        for (OperationImproved op : values()) {
+            op.applyAll(xs, ys, out);
+            System.out.println(op + ": " + Arrays.toString(out));
+        }
+        double[] partial = new double[4];
+        TIMES.applyAll(xs, ys, partial, 1, 3);
+        System.out.println("* on [1, 3): " + Arrays.toString(partial));
+    }
 }
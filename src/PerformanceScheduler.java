@@ -0,0 +1,538 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Runs the work of large numbers of {@link SingerSongwriter}s whose operations block, e.g. on I/O.
+ * <p>
+ * Work is submitted per performer. The work of a performer runs in submission order, one piece
+ * at a time, while the work of different performers runs concurrently. Each performer has a lane,
+ * a queue that is drained by at most one thread at a time; a lane gives its thread back to the
+ * executor after a batch of work, so that a busy performer can't starve the others, and it is
+ * retired as soon as it runs empty, so idle performers cost nothing.
+ * <p>
+ * The number of pieces of work submitted but not yet finished is bounded; once the bound is
+ * reached, submitting blocks until some work finishes. This keeps a fast producer from queueing
+ * an unbounded backlog in front of slow performers.
+ * <p>
+ * A {@link Scope} groups the work of one task, in the manner of structured concurrency: closing
+ * the scope waits for all the work submitted through it, and the first failure cancels the work
+ * of the scope that has not started yet. Work that has already started can't be cancelled, so
+ * the scope waits for it to finish.
+ * <p>
+ * If the executor rejects a lane, e.g. because it is bounded or has been shut down, the work
+ * waiting in the lane fails with the {@code RejectedExecutionException}, so that no future is
+ * left incomplete and no permit is lost.
+ * <p>
+ * A scheduler is {@link Metered}: it counts the work submitted, completed, failed and cancelled,
+ * and samples the latency of all work, from submission to completion.
+ * <p>
+ * Note:
+ * Virtual threads would let every blocked performer park without holding a platform thread.
+ * They are not available on the Java release this code targets, so by default work runs on a
+ * fixed pool of platform threads, which should be sized for the expected number of concurrently
+ * blocked operations. Any {@code ExecutorService} can be passed in instead, including one that
+ * starts a virtual thread per task; none of the guarantees above depend on the kind of thread.
+ *
+ * @author Spyros Dellas
+ */
+public final class PerformanceScheduler implements Metered, AutoCloseable {
+
+    // The number of pieces of work a lane runs before giving its thread back to the executor
+    private static final int BATCH = 16;
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final int maxPending;
+    private final Semaphore permits;
+    private final ConcurrentHashMap<SingerSongwriter, Lane> lanes = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * Creates a scheduler that runs work on its own pool of platform threads.
+     *
+     * @param threads    the number of threads
+     * @param maxPending the maximum number of pieces of work submitted but not yet finished
+     * @throws IllegalArgumentException if threads or maxPending is not positive
+     */
+    public PerformanceScheduler(int threads, int maxPending) {
+        this(newPool(threads), maxPending, true);
+    }
+
+    /**
+     * Creates a scheduler that runs work on the given executor. Closing the scheduler doesn't
+     * shut the executor down.
+     *
+     * @param executor   the executor
+     * @param maxPending the maximum number of pieces of work submitted but not yet finished
+     * @throws IllegalArgumentException if maxPending is not positive
+     */
+    public PerformanceScheduler(ExecutorService executor, int maxPending) {
+        this(executor, maxPending, false);
+    }
+
+    private PerformanceScheduler(ExecutorService executor, int maxPending, boolean ownsExecutor) {
+        if (maxPending <= 0)
+            throw new IllegalArgumentException("Non-positive maximum of pending work: " + maxPending);
+        this.executor = Objects.requireNonNull(executor);
+        this.ownsExecutor = ownsExecutor;
+        this.maxPending = maxPending;
+        this.permits = new Semaphore(maxPending);
+    }
+
+    private static ExecutorService newPool(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Non-positive number of threads: " + threads);
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "performer-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Submits a piece of work for the given performer. It runs after all the work submitted for
+     * the performer before it.
+     *
+     * @param performer the performer
+     * @param work      the work, which receives the performer
+     * @return a future that completes when the work finishes, or exceptionally if it throws, is
+     * cancelled, or is rejected by the executor
+     * @throws InterruptedException  if interrupted while waiting for the pending work to drop
+     *                               below the bound
+     * @throws IllegalStateException if the scheduler is closed, also while waiting
+     */
+    public CompletableFuture<Void> perform(SingerSongwriter performer, Consumer<? super SingerSongwriter> work)
+            throws InterruptedException {
+        return submit(performer, work).future;
+    }
+
+    private Task submit(SingerSongwriter performer, Consumer<? super SingerSongwriter> work)
+            throws InterruptedException {
+        Objects.requireNonNull(performer);
+        Objects.requireNonNull(work);
+        if (closed)
+            throw new IllegalStateException("Scheduler is closed");
+        permits.acquire();
+        // close() may have begun while we waited; once it holds every permit it shuts the pool down
+        if (closed) {
+            permits.release();
+            throw new IllegalStateException("Scheduler is closed");
+        }
+        Task task = new Task(performer, work);
+        submitted.increment();
+        while (true) {
+            Lane lane = lanes.computeIfAbsent(performer, Lane::new);
+            boolean start;
+            synchronized (lane) {
+                if (lane.retired)
+                    continue;   // it ran empty after we looked it up; the next lookup creates a new one
+                lane.pending.add(task);
+                start = !lane.running;
+                lane.running = true;
+            }
+            if (start)
+                lane.execute();
+            return task;
+        }
+    }
+
+    public CompletableFuture<Void> compose(SingerSongwriter performer, String songType) throws InterruptedException {
+        return perform(performer, p -> p.compose(songType));
+    }
+
+    public CompletableFuture<Void> sing(SingerSongwriter performer, String song) throws InterruptedException {
+        return perform(performer, p -> p.sing(song));
+    }
+
+    public CompletableFuture<Void> singNewSong(SingerSongwriter performer) throws InterruptedException {
+        return perform(performer, SingerSongwriter::singNewSong);
+    }
+
+    /**
+     * Opens a scope for a group of related work.
+     *
+     * @return a new scope
+     */
+    public Scope openScope() {
+        return new Scope();
+    }
+
+    /*
+     * A piece of work. Exactly one of run, cancel and reject claims it; only run calls the work,
+     * and whichever claims it releases its permit and completes finished.
+     */
+    private final class Task implements Runnable {
+        final SingerSongwriter performer;
+        final Consumer<? super SingerSongwriter> work;
+        final CompletableFuture<Void> future = new CompletableFuture<>();      // the client's view
+        final CompletableFuture<Void> finished = new CompletableFuture<>();    // never completes exceptionally
+        final long submittedAt = System.nanoTime();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Task(SingerSongwriter performer, Consumer<? super SingerSongwriter> work) {
+            this.performer = performer;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true))
+                return;     // cancelled while it waited in the lane
+            try {
+                if (future.isDone()) {
+                    cancelled.increment();  // the client cancelled its future
+                    return;
+                }
+                try {
+                    work.accept(performer);
+                    completed.increment();
+                    future.complete(null);
+                } catch (Throwable t) {
+                    failed.increment();
+                    future.completeExceptionally(t);
+                }
+                latencies.record(System.nanoTime() - submittedAt);
+            } finally {
+                finish();
+            }
+        }
+
+        // Cancels the work if it hasn't started; returns false if it has
+        boolean cancel() {
+            if (!claimed.compareAndSet(false, true))
+                return false;
+            cancelled.increment();
+            future.cancel(false);
+            finish();
+            return true;
+        }
+
+        void reject(RejectedExecutionException e) {
+            if (!claimed.compareAndSet(false, true))
+                return;
+            failed.increment();
+            future.completeExceptionally(e);
+            finish();
+        }
+
+        private void finish() {
+            permits.release();
+            finished.complete(null);
+        }
+    }
+
+    // The work of one performer; all fields but performer are guarded by the lane's lock
+    private final class Lane implements Runnable {
+        final SingerSongwriter performer;
+        final ArrayDeque<Task> pending = new ArrayDeque<>();
+        boolean running = false;    // true while the lane is queued on, or running in, the executor
+        boolean retired = false;    // true once the lane has run empty and left the map
+
+        Lane(SingerSongwriter performer) {
+            this.performer = performer;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH; i++) {
+                Task task;
+                synchronized (this) {
+                    task = pending.poll();
+                    if (task == null) {
+                        running = false;
+                        retired = true;
+                        lanes.remove(performer, this);
+                        return;
+                    }
+                }
+                task.run();
+            }
+            // Let the other lanes have the thread; the rest of this lane's work keeps its order
+            execute();
+        }
+
+        void execute() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                reject(e);
+            }
+        }
+
+        // The lane can't run, so it is retired, and the work waiting in it fails
+        private void reject(RejectedExecutionException e) {
+            List<Task> rejected;
+            synchronized (this) {
+                rejected = new ArrayList<>(pending);
+                pending.clear();
+                running = false;
+                retired = true;
+                lanes.remove(performer, this);
+            }
+            for (Task task : rejected)
+                task.reject(e);
+        }
+    }
+
+    /**
+     * A group of work that is waited for as a whole.
+     * <p>
+     * If a piece of work fails, the work of the scope that has not started yet is cancelled, and
+     * the failure is reported by {@link #join()}. The work that has started runs to completion,
+     * and both {@code join} and {@code close} wait for it. Closing a scope waits for all of its
+     * work to finish, so no work outlives the scope it was submitted through:
+     * <pre>{@code
+     * try (PerformanceScheduler.Scope scope = scheduler.openScope()) {
+     *     scope.compose(musician, "Pop");
+     *     scope.singNewSong(musician);
+     *     scope.join();
+     * }
+     * }</pre>
+     */
+    public final class Scope implements AutoCloseable {
+        private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private Scope() {
+        }
+
+        /**
+         * Submits a piece of work for the given performer, as part of this scope.
+         *
+         * @see PerformanceScheduler#perform(SingerSongwriter, Consumer)
+         */
+        public CompletableFuture<Void> perform(SingerSongwriter performer, Consumer<? super SingerSongwriter> work)
+                throws InterruptedException {
+            if (failure.get() != null)
+                throw new IllegalStateException("Scope has failed", failure.get());
+            Task task = submit(performer, work);
+            tasks.add(task);
+            task.future.whenComplete((v, e) -> {
+                if (e != null && !(e instanceof CancellationException) && failure.compareAndSet(null, e))
+                    cancelAll();
+            });
+            if (failure.get() != null)
+                task.cancel();  // another piece of work failed while this one was being submitted
+            return task.future;
+        }
+
+        public CompletableFuture<Void> compose(SingerSongwriter performer, String songType) throws InterruptedException {
+            return perform(performer, p -> p.compose(songType));
+        }
+
+        public CompletableFuture<Void> sing(SingerSongwriter performer, String song) throws InterruptedException {
+            return perform(performer, p -> p.sing(song));
+        }
+
+        public CompletableFuture<Void> singNewSong(SingerSongwriter performer) throws InterruptedException {
+            return perform(performer, SingerSongwriter::singNewSong);
+        }
+
+        // Cancels the work that hasn't started; the work that has is left to finish
+        private void cancelAll() {
+            for (Task task : tasks)
+                task.cancel();
+        }
+
+        /**
+         * Waits for all the work of this scope to finish.
+         *
+         * @throws InterruptedException if interrupted while waiting
+         * @throws ExecutionException   if a piece of work failed; its cause is the first failure
+         */
+        public void join() throws InterruptedException, ExecutionException {
+            // The first failure is reported below, once everything has finished
+            for (Task task : tasks)
+                task.finished.get();
+            Throwable t = failure.get();
+            if (t != null)
+                throw new ExecutionException(t);
+        }
+
+        /**
+         * Waits for all the work of this scope to finish, without reporting failures.
+         */
+        @Override
+        public void close() {
+            for (Task task : tasks)
+                task.finished.join();
+        }
+    }
+
+    /**
+     * Returns the number of pieces of work submitted but not yet finished.
+     *
+     * @return the number of pending pieces of work
+     */
+    public int pendingCount() {
+        return maxPending - permits.availablePermits();
+    }
+
+    public LatencyHistogram latencies() {
+        return latencies;
+    }
+
+    /**
+     * Publishes this scheduler in the default {@link MetricsRegistry} under the given name.
+     *
+     * @param name the name to register under
+     * @return this scheduler
+     */
+    public PerformanceScheduler registerAs(String name) {
+        MetricsRegistry.getDefault().register(name, this);
+        return this;
+    }
+
+    @Override
+    public Map<String, Long> counters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("submitted", submitted.sum());
+        counters.put("completed", completed.sum());
+        counters.put("failed", failed.sum());
+        counters.put("cancelled", cancelled.sum());
+        return counters;
+    }
+
+    @Override
+    public Map<String, Number> gauges() {
+        Map<String, Number> gauges = new LinkedHashMap<>();
+        gauges.put("pending", pendingCount());
+        gauges.put("activePerformers", lanes.size());
+        gauges.put("meanLatencyNanos", latencies.mean());
+        gauges.put("p50LatencyNanos", latencies.percentile(50));
+        gauges.put("p99LatencyNanos", latencies.percentile(99));
+        return gauges;
+    }
+
+    /**
+     * Stops accepting work and waits for the submitted work to finish. The executor is shut down
+     * if the scheduler created it.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        permits.acquireUninterruptibly(maxPending);     // every piece of work releases its permit when it finishes
+        permits.release(maxPending);
+        if (ownsExecutor)
+            executor.shutdown();
+    }
+
+    /**
+     * Test client; a performer whose operations sleep stands in for one that blocks on I/O.
+     */
+    public static void main(String[] args) throws Exception {
+        final class FakeMusician implements SingerSongwriter {
+            private final long delayMillis;
+            private int songsSung = 0;   // only ever touched by one thread at a time, by the lane
+            private boolean outOfOrder = false;
+
+            FakeMusician(long delayMillis) {
+                this.delayMillis = delayMillis;
+            }
+
+            private void io() {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void compose(String songType) {
+                io();
+            }
+
+            @Override
+            public void singNewSong() {
+                io();
+            }
+
+            @Override
+            public void sing(String song) {
+                if (song.equals("Off-key"))
+                    throw new IllegalStateException("Booed off the stage");
+                io();
+                if (Integer.parseInt(song) != songsSung++)
+                    outOfOrder = true;
+            }
+        }
+
+        int performers = 10_000;
+        int songs = 5;
+        List<FakeMusician> musicians = new ArrayList<>();
+        for (int i = 0; i < performers; i++)
+            musicians.add(new FakeMusician(1));
+
+        try (PerformanceScheduler scheduler = new PerformanceScheduler(256, 2_000).registerAs("performances")) {
+            long start = System.nanoTime();
+            try (Scope scope = scheduler.openScope()) {
+                for (int song = 0; song < songs; song++)
+                    for (FakeMusician musician : musicians)
+                        scope.sing(musician, Integer.toString(song));
+                scope.join();
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%d songs in %.1f ms (%.0f songs/s)%n", performers * songs, elapsed / 1e6,
+                    performers * songs / (elapsed / 1e9));
+            System.out.println("out of order: " + musicians.stream().filter(m -> m.outOfOrder).count());
+
+            // One failure cancels the rest of the scope's work, but the work that has started
+            // finishes before the scope closes
+            FakeMusician soloist = new FakeMusician(5);
+            FakeMusician balladeer = new FakeMusician(500);
+            CountDownLatch balladStarted = new CountDownLatch(1);
+            CompletableFuture<Void> ballad = null;
+            start = System.nanoTime();
+            try (Scope scope = scheduler.openScope()) {
+                ballad = scope.perform(balladeer, p -> {
+                    balladStarted.countDown();
+                    p.compose("Ballad");
+                });
+                balladStarted.await();
+                // The failure waits until the rest is submitted, since a failed scope accepts no more work
+                CountDownLatch allSubmitted = new CountDownLatch(1);
+                scope.perform(soloist, p -> {
+                    try {
+                        allSubmitted.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    p.sing("Off-key");
+                });
+                for (int i = 0; i < 100; i++)
+                    scope.compose(soloist, "Pop");
+                allSubmitted.countDown();
+                scope.join();
+            } catch (ExecutionException e) {
+                System.out.println("scope failed: " + e.getCause().getMessage());
+            }
+            System.out.printf("scope closed after %.0f ms, ballad finished: %b%n", (System.nanoTime() - start) / 1e6,
+                    ballad.isDone() && !ballad.isCompletedExceptionally());
+            System.out.println("counters: " + scheduler.counters());
+            System.out.println("gauges: " + scheduler.gauges());
+            MetricsRegistry.getDefault().unregister("performances");
+        }
+
+        // An executor that rejects the work fails it, rather than leaving it pending forever
+        ExecutorService shutDown = Executors.newSingleThreadExecutor();
+        shutDown.shutdown();
+        try (PerformanceScheduler scheduler = new PerformanceScheduler(shutDown, 1)) {
+            CompletableFuture<Void> song = scheduler.sing(new FakeMusician(1), "0");
+            System.out.println("rejected: " + song.handle((v, e) -> e.getClass().getSimpleName()).join()
+                    + ", pending: " + scheduler.pendingCount() + ", counters: " + scheduler.counters());
+        }
+    }
+}
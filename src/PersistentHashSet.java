@@ -0,0 +1,359 @@
+import java.util.*;
+
+/**
+ * An immutable hash set whose updates return a new set that shares almost all of its structure
+ * with the old one.
+ * <p>
+ * The set is a hash array mapped trie: each level of the trie consumes 5 bits of the hash of an
+ * element, and each node stores only its occupied slots, together with a bitmap of which slots
+ * they are. {@link #with} and {@link #without} copy the nodes on the path to the element, and
+ * nothing else. With 32-bit hashes the trie is at most 7 levels deep, so an update costs a
+ * bounded number of small array copies, however large the set is. Elements whose hashes are
+ * equal in all 32 bits share a collision node at the bottom of the trie.
+ * <p>
+ * Because a set never changes, holding on to one is a free snapshot: it is safe to share between
+ * threads, and later updates, which produce new sets, can't affect it. The mutators of the
+ * {@code Set} interface throw {@code UnsupportedOperationException}. Null elements are not
+ * permitted.
+ *
+ * @param <E> the type of elements in this set
+ * @author Spyros Dellas
+ */
+public final class PersistentHashSet<E> extends AbstractSet<E> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int MAX_DEPTH = 8;     // 7 bitmap levels for 32 bits of hash, then a collision node
+
+    private static final PersistentHashSet<?> EMPTY = new PersistentHashSet<>(new BitmapNode(0, new Object[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashSet(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty set.
+     *
+     * @return the empty set
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentHashSet<E> of() {
+        // this is a safe cast; the empty set holds no elements of any type
+        return (PersistentHashSet<E>) EMPTY;
+    }
+
+    /**
+     * Returns a set that contains the elements of this set and the given element.
+     *
+     * @param e the element to add
+     * @return this set if it already contains the element, or a new set otherwise
+     * @throws NullPointerException if the element is null
+     */
+    public PersistentHashSet<E> with(E e) {
+        Objects.requireNonNull(e);
+        Node newRoot = root.with(e, hash(e), 0);
+        return (newRoot == root) ? this : new PersistentHashSet<>(newRoot, size + 1);
+    }
+
+    /**
+     * Returns a set that contains the elements of this set except the given element.
+     *
+     * @param o the element to remove
+     * @return this set if it doesn't contain the element, or a new set otherwise
+     */
+    public PersistentHashSet<E> without(Object o) {
+        if (o == null)
+            return this;
+        Node newRoot = root.without(o, hash(o), 0);
+        return (newRoot == root) ? this : new PersistentHashSet<>(newRoot, size - 1);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o != null && root.contains(o, hash(o), 0);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new TrieIterator<>(root);
+    }
+
+    // Spreads the high bits down, as HashMap does, so that the first levels see them too
+    private static int hash(Object o) {
+        int h = o.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /*
+     * A node of the trie. Every slot holds either an element or a child node; a child always
+     * holds at least two elements, because a child that is left with one is replaced by it.
+     */
+    private abstract static class Node {
+
+        abstract boolean contains(Object o, int hash, int shift);
+
+        // Returns this node if it already contains the element
+        abstract Node with(Object e, int hash, int shift);
+
+        // Returns this node if it doesn't contain the element
+        abstract Node without(Object o, int hash, int shift);
+
+        abstract Object[] slots();
+
+        // The only element of this node, or null if it holds more than one or has children
+        Object single() {
+            Object[] slots = slots();
+            return (slots.length == 1 && !(slots[0] instanceof Node)) ? slots[0] : null;
+        }
+    }
+
+    private static final class BitmapNode extends Node {
+
+        private final int bitmap;       // bit i is set if slot i is occupied
+        private final Object[] slots;   // the occupied slots, in order
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        boolean contains(Object o, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0)
+                return false;
+            Object slot = slots[index(bit)];
+            if (slot instanceof Node)
+                return ((Node) slot).contains(o, hash, shift + BITS);
+            return slot.equals(o);
+        }
+
+        @Override
+        Node with(Object e, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int i = index(bit);
+            if ((bitmap & bit) == 0)
+                return new BitmapNode(bitmap | bit, inserted(slots, i, e));
+            Object slot = slots[i];
+            if (slot instanceof Node) {
+                Node child = (Node) slot;
+                Node newChild = child.with(e, hash, shift + BITS);
+                return (newChild == child) ? this : new BitmapNode(bitmap, replaced(slots, i, newChild));
+            }
+            if (slot.equals(e))
+                return this;
+            return new BitmapNode(bitmap, replaced(slots, i, pair(slot, hash(slot), e, hash, shift + BITS)));
+        }
+
+        @Override
+        Node without(Object o, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0)
+                return this;
+            int i = index(bit);
+            Object slot = slots[i];
+            if (slot instanceof Node) {
+                Node child = (Node) slot;
+                Node newChild = child.without(o, hash, shift + BITS);
+                if (newChild == child)
+                    return this;
+                Object single = newChild.single();
+                return new BitmapNode(bitmap, replaced(slots, i, (single != null) ? single : newChild));
+            }
+            if (!slot.equals(o))
+                return this;
+            return new BitmapNode(bitmap & ~bit, removed(slots, i));
+        }
+
+        @Override
+        Object[] slots() {
+            return slots;
+        }
+    }
+
+    // The elements whose hashes are equal in all 32 bits
+    private static final class CollisionNode extends Node {
+
+        private final Object[] elements;
+
+        CollisionNode(Object[] elements) {
+            this.elements = elements;
+        }
+
+        private int indexOf(Object o) {
+            for (int i = 0; i < elements.length; i++)
+                if (elements[i].equals(o))
+                    return i;
+            return -1;
+        }
+
+        @Override
+        boolean contains(Object o, int hash, int shift) {
+            return indexOf(o) >= 0;
+        }
+
+        @Override
+        Node with(Object e, int hash, int shift) {
+            return (indexOf(e) >= 0) ? this : new CollisionNode(inserted(elements, elements.length, e));
+        }
+
+        @Override
+        Node without(Object o, int hash, int shift) {
+            int i = indexOf(o);
+            return (i < 0) ? this : new CollisionNode(removed(elements, i));
+        }
+
+        @Override
+        Object[] slots() {
+            return elements;
+        }
+    }
+
+    // A node holding two distinct elements, at the given level of the trie
+    private static Node pair(Object a, int hashA, Object b, int hashB, int shift) {
+        if (shift >= Integer.SIZE)
+            return new CollisionNode(new Object[]{a, b});
+        int i = (hashA >>> shift) & MASK;
+        int j = (hashB >>> shift) & MASK;
+        if (i == j)
+            return new BitmapNode(1 << i, new Object[]{pair(a, hashA, b, hashB, shift + BITS)});
+        return new BitmapNode((1 << i) | (1 << j), (i < j) ? new Object[]{a, b} : new Object[]{b, a});
+    }
+
+    private static Object[] inserted(Object[] a, int i, Object x) {
+        Object[] result = new Object[a.length + 1];
+        System.arraycopy(a, 0, result, 0, i);
+        result[i] = x;
+        System.arraycopy(a, i, result, i + 1, a.length - i);
+        return result;
+    }
+
+    private static Object[] replaced(Object[] a, int i, Object x) {
+        Object[] result = a.clone();
+        result[i] = x;
+        return result;
+    }
+
+    private static Object[] removed(Object[] a, int i) {
+        Object[] result = new Object[a.length - 1];
+        System.arraycopy(a, 0, result, 0, i);
+        System.arraycopy(a, i + 1, result, i, a.length - i - 1);
+        return result;
+    }
+
+    // Walks the trie depth first, with an explicit stack of the slots being visited at each level
+    private static final class TrieIterator<E> implements Iterator<E> {
+
+        private final Object[][] stack = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth = 0;
+        private Object next;
+
+        TrieIterator(Node root) {
+            stack[0] = root.slots();
+            advance();
+        }
+
+        private void advance() {
+            while (depth >= 0) {
+                Object[] slots = stack[depth];
+                if (positions[depth] == slots.length) {
+                    depth--;
+                    continue;
+                }
+                Object slot = slots[positions[depth]++];
+                if (slot instanceof Node) {
+                    stack[++depth] = ((Node) slot).slots();
+                    positions[depth] = 0;
+                } else {
+                    next = slot;
+                    return;
+                }
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            // this is a safe cast; only elements of type E are ever added to the trie
+            E result = (E) next;
+            advance();
+            return result;
+        }
+    }
+
+    /**
+     * Test client; checks the set against a {@code HashSet} under random updates, including
+     * elements whose hashes collide, and shows that older versions are unaffected by updates.
+     */
+    public static void main(String[] args) {
+        // Keys with only 16 distinct hash codes, so that the collision nodes are exercised too
+        final class Key {
+            final int id;
+
+            Key(int id) {
+                this.id = id;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                return o instanceof Key && ((Key) o).id == id;
+            }
+
+            @Override
+            public int hashCode() {
+                return (id % 3 == 0) ? id & 15 : Integer.hashCode(id) * 0x9E3779B9;
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom(7);
+        PersistentHashSet<Key> set = PersistentHashSet.of();
+        Set<Key> reference = new HashSet<>();
+        PersistentHashSet<Key> snapshot = null;
+        Set<Key> snapshotReference = null;
+        for (int i = 0; i < 200_000; i++) {
+            Key key = new Key(random.nextInt(20_000));
+            if (random.nextInt(3) == 0) {
+                set = set.without(key);
+                reference.remove(key);
+            } else {
+                set = set.with(key);
+                reference.add(key);
+            }
+            if (i == 100_000) {
+                snapshot = set;
+                snapshotReference = new HashSet<>(reference);
+            }
+        }
+        System.out.println("size = " + set.size() + ", equal to reference = " + set.equals(reference)
+                + " and " + reference.equals(set) + ", iterated = " + set.stream().count());
+        System.out.println("snapshot size = " + snapshot.size() + ", unaffected by later updates = "
+                + snapshot.equals(snapshotReference));
+
+        for (Key key : reference)
+            set = set.without(key);
+        System.out.println("after removing every element: size = " + set.size() + ", empty = "
+                + !set.iterator().hasNext());
+    }
+}
@@ -1,10 +1,8 @@
 import java.util.EnumMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.toMap;
-
 /**
  * Demo class that demonstrates usage of {@code ENumMap} combined with streams.
  *
@@ -35,25 +33,111 @@ public enum Phase {
          * Initializes a phase transition map.
          *
          * The code to initialize the phase transition map is a bit complicated. The type
-         * of the map is Map<Phase, Map<Phase, Transition>>, which means “map from (source) phase to
+         * of the map is Map<Phase, EnumMap<Phase, Transition>>, which means “map from (source) phase to
          * map from (destination) phase to transition.”
          * This map-of-maps is initialized using a cascaded sequence of two collectors. The first collector groups
          * the transitions by source phase, and the second creates an EnumMap with mappings from destination phase to
-         * transition. The merge function in the second collector ((x, y) -> y)) is unused; it is required only
-         * because we need to specify a map factory in order to get an EnumMap, and Collectors provides telescoping
-         * factories.
+         * transition. Both come from EnumCollectors, which accumulate into arrays indexed by ordinal and build the
+         * EnumMaps at the end; unlike Collectors.toMap, they need neither a map factory nor a merge function to
+         * produce an EnumMap, and two transitions between the same pair of phases are reported as an error.
          *
          * PERFORMANCE:
          * Internally, the map of maps is implemented with an array of arrays, so we pay little in space or
          * time cost for the added clarity, safety, and ease of maintenance.
          */
-        private static final Map<Phase, Map<Phase, Transition>> m =
-                Stream.of(Transition.values()).collect(groupingBy(t -> t.from, () -> new EnumMap<>(Phase.class),
-                        toMap(t -> t.to, t -> t, (x, y) -> y, () -> new EnumMap<>(Phase.class))));
+        private static final Map<Phase, EnumMap<Phase, Transition>> m =
+                Stream.of(Transition.values()).collect(EnumCollectors.groupingByEnum(Phase.class, t -> t.from,
+                        EnumCollectors.toEnumMap(Phase.class, t -> t.to, t -> t)));
+
+        /**
+         * The byte written by {@link #transitions(byte[], byte[], byte[])} for a pair of
+         * phases that has no transition, namely a phase and itself.
+         * <p>
+         * {@link #from(Phase, Phase)} reports the same pairs with an empty {@code Optional}, which
+         * is its "no transition" sentinel; neither API ever returns null for a missing transition.
+         */
+        public static final byte NO_TRANSITION = -1;
+
+        private static final Phase[] PHASES = Phase.values();
+        private static final int N = PHASES.length;
+
+        /*
+         * The same mapping flattened into arrays indexed by from.ordinal() * N + to.ordinal(),
+         * so a lookup costs one multiply-add and one array load instead of two EnumMap lookups.
+         * The first table holds the transitions, wrapped once here so that from never allocates,
+         * with the empty Optional for a missing transition; the second holds their ordinals, with
+         * NO_TRANSITION, for the batch API.
+         */
+        private static final Optional<Transition>[] TABLE = newTable(N * N);
+        private static final byte[] ORDINAL_TABLE = new byte[N * N];
+
+        @SuppressWarnings("unchecked")
+        private static Optional<Transition>[] newTable(int size) {
+            // this is a safe cast; the array never escapes and only holds Optional<Transition> instances
+            return (Optional<Transition>[]) new Optional<?>[size];
+        }
+
+        static {
+            for (Phase from : PHASES) {
+                for (Phase to : PHASES) {
+                    Transition t = m.get(from).get(to);
+                    TABLE[from.ordinal() * N + to.ordinal()] = Optional.ofNullable(t);
+                    ORDINAL_TABLE[from.ordinal() * N + to.ordinal()] = (t == null) ? NO_TRANSITION : (byte) t.ordinal();
+                }
+            }
+        }
+
+        /**
+         * Returns the transition from one phase to another.
+         *
+         * @param from the source phase
+         * @param to   the destination phase
+         * @return the transition, or an empty {@code Optional} if the phases are the same
+         * @throws NullPointerException if either phase is null
+         */
+        public static Optional<Transition> from(Phase from, Phase to) {
+            return TABLE[from.ordinal() * N + to.ordinal()];
+        }
 
-        public static Transition from(Phase from, Phase to) {
-            return m.get(from).get(to);
+        // The ordinal of the transition between the given phase ordinals, or NO_TRANSITION
+        static byte ordinalOf(int from, int to) {
+            return ORDINAL_TABLE[from * N + to];
         }
+
+        /**
+         * Resolves a batch of transitions given as phase ordinals.
+         * <p>
+         * For each i, writes to {@code out[i]} the ordinal of the transition from phase
+         * {@code from[i]} to phase {@code to[i]}, or {@link #NO_TRANSITION} if they are the same
+         * phase. The loop body is a single table load with no branches, which keeps it cheap for
+         * the JIT to unroll. For the same reason the ordinals are not validated: an ordinal out of
+         * range yields either an {@code ArrayIndexOutOfBoundsException} or an unspecified result.
+         *
+         * @param from the ordinals of the source phases
+         * @param to   the ordinals of the destination phases
+         * @param out  receives the ordinals of the transitions
+         * @throws IllegalArgumentException if the arrays differ in length
+         */
+        public static void transitions(byte[] from, byte[] to, byte[] out) {
+            if (from.length != to.length || from.length != out.length)
+                throw new IllegalArgumentException("Array lengths differ: "
+                        + from.length + ", " + to.length + ", " + out.length);
+            for (int i = 0; i < out.length; i++)
+                out[i] = ORDINAL_TABLE[from[i] * N + to[i]];
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.println("SOLID -> GAS: " + Transition.from(SOLID, GAS).map(Enum::name).orElse("none"));
+        System.out.println("GAS -> GAS: " + Transition.from(GAS, GAS).map(Enum::name).orElse("none"));
+
+        byte[] from = {0, 1, 2, 2};
+        byte[] to = {1, 2, 0, 2};
+        byte[] out = new byte[4];
+        Transition.transitions(from, to, out);
+        for (int i = 0; i < out.length; i++)
+            System.out.println(values()[from[i]] + " -> " + values()[to[i]] + ": "
+                    + ((out[i] == Transition.NO_TRANSITION) ? "none" : Transition.values()[out[i]]));
     }
 
 }
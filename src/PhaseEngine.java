@@ -0,0 +1,196 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * A state machine driven by {@link Phase.Transition}, which replays event logs for large numbers
+ * of entities.
+ * <p>
+ * An event moves an entity to a target phase. The engine keeps the phase of every entity as an
+ * ordinal in a {@code byte[]}, and counts how often each transition fires. An event that names
+ * an unknown entity, an unknown phase, or the phase the entity is already in is illegal; it is
+ * rejected and counted, and the entity keeps its phase.
+ * <p>
+ * Entities are partitioned by id across the available cores. Every partition is replayed by a
+ * single task, in log order, so the events of an entity are always applied in the order they
+ * were logged, and no two tasks ever write to the same state. Each task counts transitions in its
+ * own {@code long[]} indexed by {@code Transition.ordinal()}, and the arrays are summed only when
+ * all the tasks have completed. Illegal events are detected by checks and counted, rather than
+ * by throwing exceptions, so the hot loop never allocates.
+ * <p>
+ * An engine is not thread-safe; {@code replay} itself runs in parallel, but concurrent calls to
+ * it must be synchronized externally.
+ *
+ * @author Spyros Dellas
+ */
+public class PhaseEngine {
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final Phase.Transition[] TRANSITIONS = Phase.Transition.values();
+
+    private final byte[] states;
+    private final int partitions;
+
+    private final long[] transitionCounts = new long[TRANSITIONS.length];
+    private long rejected = 0;
+
+    /**
+     * Creates an engine for the given number of entities, all in the given initial phase, with
+     * one partition per available processor.
+     *
+     * @param entities the number of entities; their ids are 0 to entities - 1
+     * @param initial  the initial phase of every entity
+     */
+    public PhaseEngine(int entities, Phase initial) {
+        this(entities, initial, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an engine for the given number of entities, all in the given initial phase.
+     *
+     * @param entities   the number of entities; their ids are 0 to entities - 1
+     * @param initial    the initial phase of every entity
+     * @param partitions the number of partitions to replay in parallel
+     * @throws IllegalArgumentException if entities is negative or partitions is not positive
+     * @throws NullPointerException     if initial is null
+     */
+    public PhaseEngine(int entities, Phase initial, int partitions) {
+        if (entities < 0)
+            throw new IllegalArgumentException("Negative number of entities: " + entities);
+        if (partitions <= 0)
+            throw new IllegalArgumentException("Non-positive number of partitions: " + partitions);
+        states = new byte[entities];
+        Arrays.fill(states, (byte) initial.ordinal());
+        this.partitions = partitions;
+    }
+
+    /**
+     * Replays an event log, given as two parallel arrays.
+     * <p>
+     * Event i moves entity {@code entities[i]} to the phase with ordinal {@code targets[i]}.
+     *
+     * @param entities the entity of each event
+     * @param targets  the ordinal of the target phase of each event
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public void replay(int[] entities, byte[] targets) {
+        if (entities.length != targets.length)
+            throw new IllegalArgumentException("Array lengths differ: " + entities.length + ", " + targets.length);
+        int[] order = new int[entities.length];
+        int[] offsets = bucketByPartition(entities, order);
+
+        long[][] counts = new long[partitions][];
+        long[] rejections = new long[partitions];
+        IntStream.range(0, partitions).parallel().forEach(p -> {
+            long[] local = new long[TRANSITIONS.length];
+            long localRejected = 0;
+            for (int k = offsets[p]; k < offsets[p + 1]; k++) {
+                int event = order[k];
+                int entity = entities[event];
+                int target = targets[event];
+                if (entity < 0 || entity >= states.length || target < 0 || target >= PHASES.length) {
+                    localRejected++;
+                    continue;
+                }
+                byte transition = Phase.Transition.ordinalOf(states[entity], target);
+                if (transition == Phase.Transition.NO_TRANSITION) {
+                    localRejected++;
+                    continue;
+                }
+                local[transition]++;
+                states[entity] = (byte) target;
+            }
+            counts[p] = local;
+            rejections[p] = localRejected;
+        });
+
+        // The parallel stream's terminal operation happens-before this point, so the results are visible
+        for (int p = 0; p < partitions; p++) {
+            for (int t = 0; t < transitionCounts.length; t++)
+                transitionCounts[t] += counts[p][t];
+            rejected += rejections[p];
+        }
+    }
+
+    // The partition that replays the events of an entity; events of unknown entities go to partition 0
+    private int partitionOf(int entity) {
+        return (entity < 0 || entity >= states.length) ? 0 : (int) ((long) entity * partitions / states.length);
+    }
+
+    /*
+     * A stable counting sort of the event indices by partition. On return, order holds the
+     * indices of the events of partition p, in log order, between offsets[p] inclusive and
+     * offsets[p + 1] exclusive.
+     */
+    private int[] bucketByPartition(int[] entities, int[] order) {
+        int[] offsets = new int[partitions + 1];
+        for (int entity : entities)
+            offsets[partitionOf(entity) + 1]++;
+        for (int p = 0; p < partitions; p++)
+            offsets[p + 1] += offsets[p];
+        int[] next = Arrays.copyOf(offsets, partitions);
+        for (int i = 0; i < entities.length; i++)
+            order[next[partitionOf(entities[i])]++] = i;
+        return offsets;
+    }
+
+    /**
+     * Returns the current phase of the given entity.
+     *
+     * @param entity the entity
+     * @return the phase of the entity
+     * @throws IndexOutOfBoundsException if the entity is unknown
+     */
+    public Phase state(int entity) {
+        return PHASES[states[Objects.checkIndex(entity, states.length)]];
+    }
+
+    /**
+     * Returns the phase ordinals of all the entities.
+     *
+     * @return a new array holding the phase ordinal of each entity
+     */
+    public byte[] states() {
+        return states.clone();
+    }
+
+    /**
+     * Returns the number of times each transition has fired, over all replays.
+     *
+     * @return the number of times each transition has fired
+     */
+    public Map<Phase.Transition, Long> transitionCounts() {
+        Map<Phase.Transition, Long> counts = new EnumMap<>(Phase.Transition.class);
+        for (Phase.Transition t : TRANSITIONS)
+            counts.put(t, transitionCounts[t.ordinal()]);
+        return counts;
+    }
+
+    /**
+     * Returns the number of illegal events that have been rejected, over all replays.
+     *
+     * @return the number of rejected events
+     */
+    public long rejectedCount() {
+        return rejected;
+    }
+
+    public static void main(String[] args) {
+        int entities = 1_000_000;
+        int events = 20_000_000;
+        SplittableRandom random = new SplittableRandom(7);
+        int[] log = new int[events];
+        byte[] targets = new byte[events];
+        for (int i = 0; i < events; i++) {
+            log[i] = random.nextInt(entities);
+            targets[i] = (byte) random.nextInt(PHASES.length);
+        }
+
+        PhaseEngine engine = new PhaseEngine(entities, Phase.SOLID);
+        long start = System.nanoTime();
+        engine.replay(log, targets);
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("replayed %d events in %.1f ms%n", events, elapsed / 1e6);
+        System.out.println("transitions: " + engine.transitionCounts());
+        System.out.println("rejected: " + engine.rejectedCount() + ", entity 0 is " + engine.state(0));
+    }
+}
@@ -0,0 +1,258 @@
+import java.util.Objects;
+
+/**
+ * Ranks poker hands of five to seven cards through precomputed lookup tables.
+ * <p>
+ * A hand is a {@code long} with 16 bits per suit, in which bit {@code 16 * suit + value} is set
+ * if the hand holds the card of that suit and value; values run from 0 for a two to 12 for an
+ * ace. The hand of a set of cards is just the OR of their {@link #bitOf(int) bits}, so a
+ * simulation can build the hand of each player from a shared board with a single OR.
+ * <p>
+ * {@link #evaluate(long)} never sorts and never allocates. It finds the ranks held once, twice,
+ * three times and four times with a few bitwise operations on the four suit masks, and reads the
+ * straights and kickers of each rank mask from two tables of 2^13 entries. The result is an
+ * {@code int} that orders hands by strength: the better hand has the greater value, and equal
+ * hands have equal values.
+ *
+ * @author Spyros Dellas
+ */
+public final class PokerHand {
+
+    public enum Category {
+        HIGH_CARD, PAIR, TWO_PAIR, THREE_OF_A_KIND, STRAIGHT, FLUSH, FULL_HOUSE, FOUR_OF_A_KIND, STRAIGHT_FLUSH;
+
+        private static final Category[] CATEGORIES = values();
+
+        /**
+         * Returns the category of a hand, given its value.
+         *
+         * @param value the value of the hand, as returned by {@link #evaluate(long)}
+         * @return the category of the hand
+         */
+        public static Category of(int value) {
+            return CATEGORIES[value >>> CATEGORY_SHIFT];
+        }
+    }
+
+    private static final int RANKS = 13;
+    private static final int SUIT_BITS = 16;
+    private static final int RANK_MASK = (1 << RANKS) - 1;
+
+    // The value is the category followed by up to five ranks, a nibble each, most significant first
+    private static final int CATEGORY_SHIFT = 20;
+
+    // The top straight in each rank mask, as the value of its highest card; -1 if there is none
+    private static final byte[] STRAIGHTS = new byte[1 << RANKS];
+
+    // The five highest ranks in each rank mask, packed as in a hand value
+    private static final int[] KICKERS = new int[1 << RANKS];
+
+    // The bit of each card in a hand, indexed by card code
+    private static final long[] BITS = new long[Card.COUNT];
+
+    static {
+        for (int mask = 0; mask < 1 << RANKS; mask++) {
+            int straight = -1;
+            for (int top = RANKS - 1; top >= 4 && straight < 0; top--) {
+                int run = 0b11111 << (top - 4);
+                if ((mask & run) == run)
+                    straight = top;
+            }
+            // The wheel; A-2-3-4-5 is a five-high straight
+            int wheel = 1 << (RANKS - 1) | 0b1111;
+            if (straight < 0 && (mask & wheel) == wheel)
+                straight = 3;
+            STRAIGHTS[mask] = (byte) straight;
+
+            int kickers = 0;
+            int rest = mask;
+            for (int shift = 16; shift >= 0 && rest != 0; shift -= 4) {
+                int rank = highest(rest);
+                kickers |= rank << shift;
+                rest &= ~(1 << rank);
+            }
+            KICKERS[mask] = kickers;
+        }
+        for (int code = 0; code < Card.COUNT; code++) {
+            // Card.Rank starts at the ace; here the ace is the highest value
+            int value = (Card.rankOf(code).ordinal() + RANKS - 1) % RANKS;
+            BITS[code] = 1L << (SUIT_BITS * Card.suitOf(code).ordinal() + value);
+        }
+    }
+
+    /**
+     * Do not instantiate.
+     */
+    private PokerHand() {
+    }
+
+    /**
+     * Returns the bit of the given card in a hand.
+     *
+     * @param code the code of the card
+     * @return the bit of the card
+     * @throws IndexOutOfBoundsException if code is not between 0 and 51
+     */
+    public static long bitOf(int code) {
+        return BITS[Objects.checkIndex(code, Card.COUNT)];
+    }
+
+    /**
+     * Returns the hand made of the given cards.
+     *
+     * @param cards the cards
+     * @return the hand
+     */
+    public static long handOf(Card... cards) {
+        long hand = 0;
+        for (Card card : cards)
+            hand |= BITS[card.code()];
+        return hand;
+    }
+
+    /**
+     * Evaluates the given cards.
+     *
+     * @param cards five to seven distinct cards
+     * @return the value of the best five-card hand among the cards
+     * @throws IllegalArgumentException if there are fewer than five or more than seven distinct cards
+     */
+    public static int evaluate(Card... cards) {
+        long hand = handOf(cards);
+        int size = Long.bitCount(hand);
+        if (size < 5 || size > 7)
+            throw new IllegalArgumentException("Not a hand of 5 to 7 distinct cards: " + size + " cards");
+        return evaluate(hand);
+    }
+
+    /**
+     * Evaluates the given hand.
+     * <p>
+     * The hand is not validated; the result is unspecified unless it holds five to seven cards.
+     *
+     * @param hand the hand
+     * @return the value of the best five-card hand within the hand
+     */
+    public static int evaluate(long hand) {
+        int s0 = (int) hand & RANK_MASK;
+        int s1 = (int) (hand >>> SUIT_BITS) & RANK_MASK;
+        int s2 = (int) (hand >>> 2 * SUIT_BITS) & RANK_MASK;
+        int s3 = (int) (hand >>> 3 * SUIT_BITS) & RANK_MASK;
+
+        // Five of seven cards in one suit leave no room for four of a kind or a full house
+        int flush = Integer.bitCount(s0) >= 5 ? s0 : Integer.bitCount(s1) >= 5 ? s1
+                : Integer.bitCount(s2) >= 5 ? s2 : Integer.bitCount(s3) >= 5 ? s3 : 0;
+        if (flush != 0) {
+            int straight = STRAIGHTS[flush];
+            return straight >= 0
+                    ? value(Category.STRAIGHT_FLUSH, straight << 16)
+                    : value(Category.FLUSH, KICKERS[flush]);
+        }
+
+        int any = s0 | s1 | s2 | s3;
+        int quads = s0 & s1 & s2 & s3;
+        if (quads != 0)
+            return value(Category.FOUR_OF_A_KIND, highest(quads) << 16 | top(any & ~quads, 1) << 12);
+
+        int trips = (s0 & s1 & s2) | (s0 & s1 & s3) | (s0 & s2 & s3) | (s1 & s2 & s3);
+        int pairs = (s0 & s1) | (s0 & s2) | (s0 & s3) | (s1 & s2) | (s1 & s3) | (s2 & s3);
+        if (trips != 0) {
+            int trip = highest(trips);
+            int pairsLeft = pairs & ~(1 << trip);
+            if (pairsLeft != 0)
+                return value(Category.FULL_HOUSE, trip << 16 | highest(pairsLeft) << 12);
+        }
+
+        int straight = STRAIGHTS[any];
+        if (straight >= 0)
+            return value(Category.STRAIGHT, straight << 16);
+
+        if (trips != 0) {
+            int trip = highest(trips);
+            return value(Category.THREE_OF_A_KIND, trip << 16 | top(any & ~(1 << trip), 2) << 8);
+        }
+        if (pairs != 0) {
+            int high = highest(pairs);
+            int lowPairs = pairs & ~(1 << high);
+            if (lowPairs != 0) {
+                int low = highest(lowPairs);
+                return value(Category.TWO_PAIR,
+                        high << 16 | low << 12 | top(any & ~(1 << high | 1 << low), 1) << 8);
+            }
+            return value(Category.PAIR, high << 16 | top(any & ~(1 << high), 3) << 4);
+        }
+        return value(Category.HIGH_CARD, KICKERS[any]);
+    }
+
+    private static int value(Category category, int ranks) {
+        return category.ordinal() << CATEGORY_SHIFT | ranks;
+    }
+
+    // The highest rank in a non-empty rank mask
+    private static int highest(int mask) {
+        return 31 - Integer.numberOfLeadingZeros(mask);
+    }
+
+    // The n highest ranks in a rank mask, packed into the low n nibbles
+    private static int top(int mask, int n) {
+        return KICKERS[mask] >>> 4 * (5 - n);
+    }
+
+    /**
+     * Test client; enumerates every 5-card and every 7-card hand, and compares the number of
+     * hands in each category with the known totals.
+     */
+    public static void main(String[] args) {
+        long[] bits = BITS;
+
+        long[] fives = new long[Category.values().length];
+        for (int a = 0; a < 52; a++)
+            for (int b = a + 1; b < 52; b++)
+                for (int c = b + 1; c < 52; c++)
+                    for (int d = c + 1; d < 52; d++)
+                        for (int e = d + 1; e < 52; e++)
+                            fives[evaluate(bits[a] | bits[b] | bits[c] | bits[d] | bits[e]) >>> CATEGORY_SHIFT]++;
+        print("5-card hands", fives,
+                1302540, 1098240, 123552, 54912, 10200, 5108, 3744, 624, 40);
+
+        long[] sevens = new long[Category.values().length];
+        long start = System.nanoTime();
+        for (int a = 0; a < 52; a++) {
+            for (int b = a + 1; b < 52; b++) {
+                long ab = bits[a] | bits[b];
+                for (int c = b + 1; c < 52; c++) {
+                    long abc = ab | bits[c];
+                    for (int d = c + 1; d < 52; d++) {
+                        long abcd = abc | bits[d];
+                        for (int e = d + 1; e < 52; e++) {
+                            long abcde = abcd | bits[e];
+                            for (int f = e + 1; f < 52; f++) {
+                                long abcdef = abcde | bits[f];
+                                for (int g = f + 1; g < 52; g++)
+                                    sevens[evaluate(abcdef | bits[g]) >>> CATEGORY_SHIFT]++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        print("7-card hands", sevens,
+                23294460, 58627800, 31433400, 6461620, 6180020, 4047644, 3473184, 224848, 41584);
+        System.out.printf("evaluated 133784560 7-card hands in %.1f ms (%.1f million hands/s)%n",
+                elapsed / 1e6, 133784560 / (elapsed / 1e3));
+
+        Card[] royal = {
+                Card.of(Card.Suit.SPADES, Card.Rank.ACE), Card.of(Card.Suit.SPADES, Card.Rank.KING),
+                Card.of(Card.Suit.SPADES, Card.Rank.QUEEN), Card.of(Card.Suit.SPADES, Card.Rank.JACK),
+                Card.of(Card.Suit.SPADES, Card.Rank.TEN)};
+        System.out.println(Category.of(evaluate(royal)));
+    }
+
+    private static void print(String title, long[] counts, long... expected) {
+        System.out.println(title + ":");
+        for (Category category : Category.values())
+            System.out.printf("  %-16s %10d %s%n", category, counts[category.ordinal()],
+                    counts[category.ordinal()] == expected[category.ordinal()] ? "" : "(expected " + expected[category.ordinal()] + ")");
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Estimates the equity of Texas hold'em hands by Monte Carlo simulation.
+ * <p>
+ * Given the hole cards of every player and the known part of the board, each trial deals the
+ * rest of the board at random and ranks the seven-card hand of every player with
+ * {@link PokerHand#evaluate(long)}. The equity of a player is the share of the pot they win on
+ * average; a pot split k ways gives each winner 1/k of it.
+ * <p>
+ * The trials are split into a fork-join tree of tasks. Every task owns a {@link Deck} and a
+ * {@code SplittableRandom}; when a task splits, it hands a {@link SplittableRandom#split() split}
+ * of its generator to the new task. The shape of the tree depends only on the number of trials,
+ * so a given seed always produces the same random numbers, the same deals, and the same result,
+ * however many threads run the tasks and in whatever order. Shares of the pot are counted as
+ * integers, so summing the results of the tasks is exact too.
+ *
+ * @author Spyros Dellas
+ */
+public final class PokerSimulator {
+
+    public static final int MAX_PLAYERS = 10;
+
+    // Trials per leaf task; large enough to amortize the cost of a task
+    private static final int CHUNK = 1 << 15;
+
+    // The whole pot, in shares; divisible by every possible number of winners
+    private static final long POT = 2520;
+
+    /**
+     * Do not instantiate.
+     */
+    private PokerSimulator() {
+    }
+
+    /**
+     * Estimates the equity of each player, in the common fork-join pool.
+     *
+     * @param holeCards the two hole cards of each player
+     * @param board     the known cards of the board; zero to five
+     * @param trials    the number of trials
+     * @param seed      the seed of the random deals
+     * @return the estimated equity of each player, between 0 and 1
+     * @throws IllegalArgumentException if there are fewer than 2 or more than {@link #MAX_PLAYERS}
+     *                                  players, a player doesn't have two hole cards, the board
+     *                                  has more than five cards, a card appears twice, or trials
+     *                                  is not positive
+     */
+    public static double[] equities(Card[][] holeCards, Card[] board, long trials, long seed) {
+        return equities(holeCards, board, trials, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Estimates the equity of each player, in the given fork-join pool.
+     *
+     * @param holeCards the two hole cards of each player
+     * @param board     the known cards of the board; zero to five
+     * @param trials    the number of trials
+     * @param seed      the seed of the random deals
+     * @param pool      the pool that runs the simulation
+     * @return the estimated equity of each player, between 0 and 1
+     * @throws IllegalArgumentException as for {@link #equities(Card[][], Card[], long, long)}
+     */
+    public static double[] equities(Card[][] holeCards, Card[] board, long trials, long seed, ForkJoinPool pool) {
+        Objects.requireNonNull(pool);
+        int players = holeCards.length;
+        if (players < 2 || players > MAX_PLAYERS)
+            throw new IllegalArgumentException("Number of players not between 2 and " + MAX_PLAYERS + ": " + players);
+        if (board.length > 5)
+            throw new IllegalArgumentException("More than five cards on the board: " + board.length);
+        if (trials <= 0)
+            throw new IllegalArgumentException("Non-positive number of trials: " + trials);
+
+        long known = 0;
+        long[] hands = new long[players];
+        for (int p = 0; p < players; p++) {
+            if (holeCards[p].length != 2)
+                throw new IllegalArgumentException("Player " + p + " doesn't have two hole cards");
+            for (Card card : holeCards[p]) {
+                known = addCard(known, card);
+                hands[p] |= PokerHand.bitOf(card.code());
+            }
+        }
+        long boardHand = 0;
+        for (Card card : board) {
+            known = addCard(known, card);
+            boardHand |= PokerHand.bitOf(card.code());
+        }
+
+        Simulation root = new Simulation(new Setup(hands, boardHand, 5 - board.length, known),
+                new SplittableRandom(seed), trials);
+        long[] shares = pool.invoke(root);
+        double[] equities = new double[players];
+        for (int p = 0; p < players; p++)
+            equities[p] = (double) shares[p] / (POT * trials);
+        return equities;
+    }
+
+    // Adds a card to a mask of card codes, and throws IllegalArgumentException if it's already there
+    private static long addCard(long mask, Card card) {
+        long bit = 1L << card.code();
+        if ((mask & bit) != 0)
+            throw new IllegalArgumentException("Card appears twice: " + card);
+        return mask | bit;
+    }
+
+    // The immutable part of a simulation, shared by all of its tasks
+    private static final class Setup {
+        final long[] hands;     // the hand of the hole cards of each player
+        final long board;       // the hand of the known board cards
+        final int toDeal;       // the number of board cards to deal in each trial
+        final long known;       // the codes of the cards that are out of the deck
+
+        Setup(long[] hands, long board, int toDeal, long known) {
+            this.hands = hands;
+            this.board = board;
+            this.toDeal = toDeal;
+            this.known = known;
+        }
+    }
+
+    private static final class Simulation extends RecursiveTask<long[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Setup setup;
+        private final SplittableRandom random;
+        private final long trials;
+
+        Simulation(Setup setup, SplittableRandom random, long trials) {
+            this.setup = setup;
+            this.random = random;
+            this.trials = trials;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (trials <= CHUNK)
+                return simulate();
+            long half = trials / 2;
+            Simulation right = new Simulation(setup, random.split(), trials - half);
+            right.fork();
+            long[] shares = new Simulation(setup, random, half).compute();
+            long[] other = right.join();
+            for (int p = 0; p < shares.length; p++)
+                shares[p] += other[p];
+            return shares;
+        }
+
+        private long[] simulate() {
+            long[] hands = setup.hands;
+            int players = hands.length;
+            long[] shares = new long[players];
+            int[] values = new int[players];
+            byte[] dealt = new byte[setup.toDeal];
+
+            Deck deck = new Deck();
+            for (int code = 0; code < Card.COUNT; code++)
+                if ((setup.known & (1L << code)) != 0)
+                    deck.remove(code);
+
+            for (long t = 0; t < trials; t++) {
+                deck.deal(dealt, 0, dealt.length, random);
+                long board = setup.board;
+                for (byte code : dealt)
+                    board |= PokerHand.bitOf(code);
+                deck.undeal(dealt.length);
+
+                int best = -1;
+                int winners = 0;
+                for (int p = 0; p < players; p++) {
+                    int value = PokerHand.evaluate(hands[p] | board);
+                    values[p] = value;
+                    if (value > best) {
+                        best = value;
+                        winners = 1;
+                    } else if (value == best) {
+                        winners++;
+                    }
+                }
+                long share = POT / winners;
+                for (int p = 0; p < players; p++)
+                    if (values[p] == best)
+                        shares[p] += share;
+            }
+            return shares;
+        }
+    }
+
+    public static void main(String[] args) {
+        Card[][] holeCards = {
+                {Card.of(Card.Suit.SPADES, Card.Rank.ACE), Card.of(Card.Suit.HEARTS, Card.Rank.ACE)},
+                {Card.of(Card.Suit.CLUBS, Card.Rank.KING), Card.of(Card.Suit.DIAMONDS, Card.Rank.KING)}};
+        long trials = 20_000_000;
+
+        long start = System.nanoTime();
+        double[] equities = equities(holeCards, new Card[0], trials, 42);
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("AA vs KK preflop: %s (expected ~[0.81, 0.19])%n", Arrays.toString(equities));
+        System.out.printf("%d trials, %d hands in %.1f ms (%.1f million hands/s)%n", trials, 2 * trials,
+                elapsed / 1e6, 2 * trials / (elapsed / 1e3));
+
+        // The same seed gives the same result, whatever the parallelism
+        double[] single = equities(holeCards, new Card[0], trials, 42, new ForkJoinPool(1));
+        System.out.println("reproducible with one thread: " + Arrays.equals(equities, single));
+
+        Card[] flop = {
+                Card.of(Card.Suit.CLUBS, Card.Rank.ACE), Card.of(Card.Suit.DIAMONDS, Card.Rank.SEVEN),
+                Card.of(Card.Suit.CLUBS, Card.Rank.TWO)};
+        System.out.println("AA vs KK on Ac 7d 2c: "
+                + Arrays.toString(equities(holeCards, flop, 1_000_000, 42)));
+    }
+}
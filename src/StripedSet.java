@@ -0,0 +1,369 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * A concurrent {@code Set} that stripes its elements across a number of inner sets by hash,
+ * each one guarded by its own {@code StampedLock}.
+ * <p>
+ * {@code Collections.synchronizedSet} serializes every operation on a single lock. Here, two
+ * operations contend only if their elements land in the same stripe, so with N stripes contention
+ * drops roughly N-fold. Each stripe is a {@link ForwardingSet} that adds locking around the
+ * forwarding methods, which lets us stripe any {@code Set} implementation, not just {@code HashSet}.
+ * <p>
+ * {@code contains} first tries an optimistic read, which writes nothing to shared memory, and
+ * only takes the read lock if a writer got in the way. For this to be safe the inner sets must
+ * tolerate being read while they are modified, in the sense that such a read may return a wrong
+ * answer or throw, but must terminate, as a {@code HashSet} read does.
+ * <p>
+ * Bulk operations acquire the write locks of all the stripes they touch in ascending stripe
+ * order, so they are atomic and can never deadlock with each other. {@code size} and
+ * iteration are weakly consistent: they visit the stripes one at a time.
+ *
+ * @param <E> the type of elements in this set
+ * @author Spyros Dellas
+ */
+public class StripedSet<E> extends AbstractSet<E> {
+
+    private final Stripe<E>[] stripes;
+    private final int mask;
+
+    /**
+     * Creates a striped set whose stripes are created by the given factory.
+     *
+     * @param factory     creates the inner set of each stripe; every call must return a new empty set
+     * @param stripeCount the minimum number of stripes; rounded up to a power of two
+     * @throws IllegalArgumentException if stripeCount is not positive
+     * @throws NullPointerException     if the factory is null
+     */
+    @SuppressWarnings("unchecked")
+    public StripedSet(Supplier<? extends Set<E>> factory, int stripeCount) {
+        Objects.requireNonNull(factory);
+        if (stripeCount <= 0)
+            throw new IllegalArgumentException("Non-positive stripe count: " + stripeCount);
+        int n = (stripeCount == 1) ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        // this is a safe cast; the array never escapes and only holds Stripe<E> instances
+        stripes = (Stripe<E>[]) new Stripe<?>[n];
+        for (int i = 0; i < n; i++)
+            stripes[i] = new Stripe<>(factory.get());
+        mask = n - 1;
+    }
+
+    /**
+     * Creates a striped set of {@code HashSet}s with one stripe per available processor.
+     */
+    public StripedSet() {
+        this(HashSet::new, Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+     * Spreads the higher bits of the hash code downwards, as HashMap does, so that hash codes
+     * differing only in their upper bits still land in different stripes.
+     */
+    private int indexOf(Object o) {
+        int h = (o == null) ? 0 : o.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private Stripe<E> stripeOf(Object o) {
+        return stripes[indexOf(o)];
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return stripeOf(o).contains(o);
+    }
+
+    @Override
+    public boolean add(E e) {
+        return stripeOf(e).add(e);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return stripeOf(o).remove(o);
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (Stripe<E> stripe : stripes)
+            size += stripe.size();
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Stripe<E> stripe : stripes)
+            if (!stripe.isEmpty())
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the elements in this set.
+     * <p>
+     * The iterator copies one stripe at a time under its read lock, so it never throws
+     * {@code ConcurrentModificationException}, and it reflects every modification made before
+     * the iterator reached the affected stripe.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private int next = 0;                             // the next stripe to copy
+            private Iterator<E> current = Collections.emptyIterator();
+            private E last;
+            private boolean canRemove = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && next < stripes.length)
+                    current = stripes[next++].snapshot().iterator();
+                return current.hasNext();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                last = current.next();
+                canRemove = true;
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (!canRemove)
+                    throw new IllegalStateException();
+                StripedSet.this.remove(last);
+                canRemove = false;
+            }
+        };
+    }
+
+    /*
+     * Groups the elements of a collection by stripe, so that a bulk operation can visit each
+     * stripe exactly once. The stripes are returned in ascending order, which is the order in
+     * which they must be locked.
+     */
+    private <T> SortedMap<Integer, List<T>> byStripe(Collection<? extends T> c) {
+        SortedMap<Integer, List<T>> groups = new TreeMap<>();
+        for (T t : c)
+            groups.computeIfAbsent(indexOf(t), (unused) -> new ArrayList<>()).add(t);
+        return groups;
+    }
+
+    // Locks the given stripes in ascending order and returns the stamps in the same order
+    private long[] lockAll(Collection<Integer> indices) {
+        long[] stamps = new long[indices.size()];
+        int i = 0;
+        for (int index : indices)
+            stamps[i++] = stripes[index].lock.writeLock();
+        return stamps;
+    }
+
+    private void unlockAll(Collection<Integer> indices, long[] stamps) {
+        int i = 0;
+        for (int index : indices)
+            stripes[index].lock.unlockWrite(stamps[i++]);
+    }
+
+    private List<Integer> allStripes() {
+        List<Integer> all = new ArrayList<>(stripes.length);
+        for (int i = 0; i < stripes.length; i++)
+            all.add(i);
+        return all;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        SortedMap<Integer, List<E>> groups = byStripe(c);
+        long[] stamps = lockAll(groups.keySet());
+        try {
+            boolean modified = false;
+            for (Map.Entry<Integer, List<E>> group : groups.entrySet())
+                modified |= stripes[group.getKey()].addAllUnlocked(group.getValue());
+            return modified;
+        } finally {
+            unlockAll(groups.keySet(), stamps);
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        SortedMap<Integer, List<Object>> groups = byStripe(c);
+        long[] stamps = lockAll(groups.keySet());
+        try {
+            boolean modified = false;
+            for (Map.Entry<Integer, List<Object>> group : groups.entrySet())
+                modified |= stripes[group.getKey()].removeAllUnlocked(group.getValue());
+            return modified;
+        } finally {
+            unlockAll(groups.keySet(), stamps);
+        }
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        // Copied before locking, like the groups of addAll and removeAll: if c is this set or a
+        // view of it, calling c.contains under our write locks would wait on them forever
+        Set<?> retained = new HashSet<>(c);
+        List<Integer> all = allStripes();
+        long[] stamps = lockAll(all);
+        try {
+            boolean modified = false;
+            for (Stripe<E> stripe : stripes)
+                modified |= stripe.retainAllUnlocked(retained);
+            return modified;
+        } finally {
+            unlockAll(all, stamps);
+        }
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        for (Object o : c)
+            if (!contains(o))
+                return false;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        List<Integer> all = allStripes();
+        long[] stamps = lockAll(all);
+        try {
+            for (Stripe<E> stripe : stripes)
+                stripe.clearUnlocked();
+        } finally {
+            unlockAll(all, stamps);
+        }
+    }
+
+    /**
+     * A stripe: a forwarding set that guards every forwarded call with a {@code StampedLock}.
+     * <p>
+     * The {@code ...Unlocked} methods forward without locking; the enclosing set calls them
+     * while it already holds the write lock.
+     */
+    private static final class Stripe<E> extends ForwardingSet<E> {
+
+        final StampedLock lock = new StampedLock();
+
+        Stripe(Set<E> s) {
+            super(s);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    boolean result = super.contains(o);
+                    if (lock.validate(stamp))
+                        return result;
+                } catch (RuntimeException e) {
+                    // the set was modified while we were reading it; retry under the read lock
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return super.contains(o);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public boolean add(E e) {
+            long stamp = lock.writeLock();
+            try {
+                return super.add(e);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            long stamp = lock.writeLock();
+            try {
+                return super.remove(o);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @Override
+        public int size() {
+            long stamp = lock.tryOptimisticRead();
+            int size = super.size();
+            if (lock.validate(stamp))
+                return size;
+            stamp = lock.readLock();
+            try {
+                return super.size();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        List<E> snapshot() {
+            long stamp = lock.readLock();
+            try {
+                return new ArrayList<>(this);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        boolean addAllUnlocked(Collection<? extends E> c) {
+            return super.addAll(c);
+        }
+
+        boolean removeAllUnlocked(Collection<?> c) {
+            return super.removeAll(c);
+        }
+
+        boolean retainAllUnlocked(Collection<?> c) {
+            return super.retainAll(c);
+        }
+
+        void clearUnlocked() {
+            super.clear();
+        }
+    }
+
+    /**
+     * Test client; concurrent deduplication of overlapping ranges of integers.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Set<Integer> seen = new StripedSet<>();
+        Set<Integer> reference = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t * 50_000;
+            threads[t] = new Thread(() -> {
+                for (int i = offset; i < offset + 100_000; i++) {
+                    seen.add(i);
+                    reference.add(i);
+                    seen.contains(i - 1);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        System.out.println("size = " + seen.size() + ", equal to reference = " + seen.equals(reference));
+        seen.removeAll(List.of(1, 2, 3));
+        seen.addAll(List.of(1, 2));
+        System.out.println("size after bulk operations = " + seen.size());
+        System.out.println("retainAll(itself) modified = " + seen.retainAll(seen) + ", size = " + seen.size());
+    }
+}
@@ -1,24 +1,230 @@
+import java.io.*;
+import java.nio.CharBuffer;
 import java.util.EnumSet;
+import java.util.Objects;
 import java.util.Set;
 
 /**
  * This class demonstrates usage of {@code EnumSet}, which is a modern replacement for bit fields.
+ * <p>
+ * For the hot path of styling large documents, it also offers the bit field representation
+ * itself, kept behind methods that convert to and from {@code EnumSet}, and a buffered
+ * {@link Renderer} that writes runs of styled text with ANSI escape codes.
  *
  * @author Spyros Dellas
  */
 public class Text {
 
     public enum Style {
-        BOLD, ITALIC, UNDERLINE, STRIKETHROUGH
+        BOLD("1", "22"), ITALIC("3", "23"), UNDERLINE("4", "24"), STRIKETHROUGH("9", "29");
+
+        private final String on;    // the ANSI SGR parameter that turns the style on
+        private final String off;   // ... and the one that turns it off
+
+        Style(String on, String off) {
+            this.on = on;
+            this.off = off;
+        }
+    }
+
+    private static final Style[] STYLES = Style.values();
+    private static final int COMBINATIONS = 1 << STYLES.length;
+
+    /*
+     * The escape sequences that turn each combination of styles on and off, indexed by the
+     * bit field of the combination. There are only 2^4 combinations, so it's cheaper to build
+     * them all once than to build any of them on every run of text.
+     */
+    private static final String[] PREFIXES = new String[COMBINATIONS];
+    private static final String[] SUFFIXES = new String[COMBINATIONS];
+
+    static {
+        for (int bits = 0; bits < COMBINATIONS; bits++) {
+            StringBuilder on = new StringBuilder();
+            StringBuilder off = new StringBuilder();
+            for (Style style : STYLES) {
+                if ((bits & (1 << style.ordinal())) != 0) {
+                    on.append(on.length() == 0 ? "\u001b[" : ";").append(style.on);
+                    off.append(off.length() == 0 ? "\u001b[" : ";").append(style.off);
+                }
+            }
+            PREFIXES[bits] = (on.length() == 0) ? "" : on.append('m').toString();
+            SUFFIXES[bits] = (off.length() == 0) ? "" : off.append('m').toString();
+        }
     }
 
     public static void applyStyles(Set<Style> styles) {
+        // Build the whole message first so that it reaches the synchronized PrintStream in a single call
+        StringBuilder sb = new StringBuilder();
         for (Style style : styles) {
-            System.out.println("Applying style: " + style);
+            sb.append("Applying style: ").append(style).append(System.lineSeparator());
         }
+        System.out.print(sb);
+    }
+
+    /**
+     * Returns the bit field representation of the given set of styles; bit i is set if and only
+     * if the style with ordinal i is in the set.
+     *
+     * @param styles the set of styles
+     * @return the bit field of the styles
+     */
+    public static long toBits(Set<Style> styles) {
+        long bits = 0;
+        for (Style style : styles)
+            bits |= 1L << style.ordinal();
+        return bits;
+    }
+
+    /**
+     * Returns the set of styles with the given bit field representation.
+     *
+     * @param bits the bit field of the styles
+     * @return a new {@code EnumSet} of the styles
+     * @throws IllegalArgumentException if a bit is set that doesn't correspond to a style
+     */
+    public static EnumSet<Style> fromBits(long bits) {
+        checkBits(bits);
+        EnumSet<Style> styles = EnumSet.noneOf(Style.class);
+        for (Style style : STYLES)
+            if ((bits & (1L << style.ordinal())) != 0)
+                styles.add(style);
+        return styles;
     }
 
-    public static void main(String[] args) {
+    private static int checkBits(long bits) {
+        if ((bits & ~(COMBINATIONS - 1L)) != 0)
+            throw new IllegalArgumentException("Not a combination of styles: " + Long.toBinaryString(bits));
+        return (int) bits;
+    }
+
+    /**
+     * Returns the escape sequence that turns the given combination of styles on.
+     *
+     * @param bits the bit field of the styles
+     * @return the escape sequence; empty if no style is set
+     * @throws IllegalArgumentException if a bit is set that doesn't correspond to a style
+     */
+    public static String prefix(long bits) {
+        return PREFIXES[checkBits(bits)];
+    }
+
+    /**
+     * Returns the escape sequence that turns the given combination of styles off.
+     *
+     * @param bits the bit field of the styles
+     * @return the escape sequence; empty if no style is set
+     * @throws IllegalArgumentException if a bit is set that doesn't correspond to a style
+     */
+    public static String suffix(long bits) {
+        return SUFFIXES[checkBits(bits)];
+    }
+
+    /**
+     * Writes runs of styled text to a {@code Writer}, through a reusable {@code CharBuffer}.
+     * <p>
+     * The runs are collected in the buffer and handed to the underlying writer only when the
+     * buffer fills up or the renderer is flushed, so a document is written in a few large calls
+     * instead of several small calls per run. Consecutive runs in the same styles share a
+     * single pair of escape sequences.
+     */
+    public static final class Renderer implements Flushable, Closeable {
+
+        private final Writer out;
+        private final CharBuffer buffer;
+        private int current = 0;    // the bit field of the styles that are currently on
+
+        /**
+         * Creates a renderer that writes to the given writer.
+         *
+         * @param out        the writer
+         * @param bufferSize the size of the buffer in chars
+         * @throws IllegalArgumentException if bufferSize is not positive
+         */
+        public Renderer(Writer out, int bufferSize) {
+            this.out = Objects.requireNonNull(out);
+            if (bufferSize <= 0)
+                throw new IllegalArgumentException("Non-positive buffer size: " + bufferSize);
+            this.buffer = CharBuffer.allocate(bufferSize);
+        }
+
+        public Renderer(Writer out) {
+            this(out, 8192);
+        }
+
+        /**
+         * Writes a run of text in the given combination of styles.
+         *
+         * @param styles the bit field of the styles
+         * @param text   the text
+         * @return this renderer
+         * @throws IOException              if an IO error occurs
+         * @throws IllegalArgumentException if a bit is set that doesn't correspond to a style
+         */
+        public Renderer write(long styles, CharSequence text) throws IOException {
+            int bits = checkBits(styles);
+            if (bits != current) {
+                append(SUFFIXES[current]);
+                append(PREFIXES[bits]);
+                current = bits;
+            }
+            append(text);
+            return this;
+        }
+
+        /**
+         * Writes a run of text in the given set of styles.
+         *
+         * @param styles the styles
+         * @param text   the text
+         * @return this renderer
+         * @throws IOException if an IO error occurs
+         */
+        public Renderer write(Set<Style> styles, CharSequence text) throws IOException {
+            return write(toBits(styles), text);
+        }
+
+        private void append(CharSequence s) throws IOException {
+            int start = 0;
+            while (start < s.length()) {
+                if (!buffer.hasRemaining())
+                    drain();
+                int end = Math.min(s.length(), start + buffer.remaining());
+                buffer.append(s, start, end);
+                start = end;
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.clear();
+        }
+
+        /**
+         * Turns all styles off and writes everything buffered so far to the underlying writer.
+         *
+         * @throws IOException if an IO error occurs
+         */
+        @Override
+        public void flush() throws IOException {
+            append(SUFFIXES[current]);
+            current = 0;
+            drain();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
         /* Any Set could be passed in, but EnumSet is clearly best.
          * This is because internally, each EnumSet is represented as a bit vector
          *
@@ -28,5 +234,16 @@ public class Text {
          * all the many advantages of enum types.
          */
         applyStyles(EnumSet.of(Style.BOLD, Style.ITALIC, Style.UNDERLINE, Style.STRIKETHROUGH));
+
+        long boldItalic = toBits(EnumSet.of(Style.BOLD, Style.ITALIC));
+        System.out.println(fromBits(boldItalic) + " = " + Long.toBinaryString(boldItalic));
+
+        Renderer renderer = new Renderer(new OutputStreamWriter(System.out));
+        renderer.write(0, "plain, ")
+                .write(boldItalic, "bold italic, ")
+                .write(boldItalic, "still bold italic, ")
+                .write(EnumSet.of(Style.UNDERLINE), "underlined")
+                .write(0, System.lineSeparator());
+        renderer.flush();
     }
 }